@@ -0,0 +1,124 @@
+package ru.mdsps.views.waveprogressview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.geom.Path2D;
+import java.util.concurrent.TimeUnit;
+
+import ru.mdsps.views.waveprogressview.WaveModel;
+
+/**
+ * Per-frame cost of the wave pipeline on the plain JVM. Path construction
+ * uses {@link Path2D} in place of {@code android.graphics.Path}, so it
+ * measures the sampling and the per-vertex call pattern, not Skia.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaveModelBenchmark {
+
+    private static final long FRAME_NANOS = 16666667L;
+
+    // View widths in px: small phone widget, full-width phone, tablet
+    @Param({"240", "720", "1440"})
+    public int width;
+
+    // X_SPACE, the distance between sampled vertices
+    @Param({"5", "20"})
+    public float step;
+
+    @Param({"1", "3"})
+    public int lengthMode;
+
+    @Param({"1", "3"})
+    public int heightMode;
+
+    private WaveModel mModel;
+    private float[] mLayerBuffer;
+    private float[] mOutlineBuffer;
+    private Path2D.Float mPath;
+    private long mTimeNanos;
+    private float mProgress;
+
+    @Setup
+    public void setUp() {
+        mModel = new WaveModel();
+        mModel.setSize(width, width * 0.75f);
+        mModel.setStep(step);
+        mModel.setLengthMode(lengthMode);
+        mModel.setHeightMode(heightMode);
+        mModel.setProgress(50);
+        mModel.setTime(FRAME_NANOS);
+
+        mLayerBuffer = new float[mModel.getLayerVertexCount() * 2 * mModel.getLayerCount()];
+        mOutlineBuffer = new float[mModel.getOutlineVertexCount(0) * 2];
+        mPath = new Path2D.Float(Path2D.WIND_NON_ZERO, mOutlineBuffer.length / 2 + 4);
+        mTimeNanos = FRAME_NANOS;
+    }
+
+    /**
+     * Wave samples of all layers for one frame.
+     */
+    @Benchmark
+    public float[] fillLayers() {
+        int offset = 0;
+        for (int layer = 0; layer < mModel.getLayerCount(); layer++) {
+            offset += mModel.fillLayer(layer, mLayerBuffer, offset);
+        }
+        return mLayerBuffer;
+    }
+
+    /**
+     * Outline sampling and path building, done when the size or a mode changes.
+     */
+    @Benchmark
+    public Path2D.Float buildPath() {
+        int count = mModel.fillOutline(0, mOutlineBuffer, 0);
+        float height = mModel.getHeight();
+        Path2D.Float path = mPath;
+        path.reset();
+        path.moveTo(0, height);
+        for (int i = 0; i < count; i += 2) {
+            path.lineTo(mOutlineBuffer[i], mOutlineBuffer[i + 1]);
+        }
+        path.lineTo(mOutlineBuffer[count - 2], height);
+        path.closePath();
+        return path;
+    }
+
+    /**
+     * Progress to crest height mapping while progress animates.
+     */
+    @Benchmark
+    public float progressToLevel() {
+        mProgress = mProgress >= 100 ? 0 : mProgress + 0.37f;
+        return mModel.getLevel(mProgress);
+    }
+
+    /**
+     * Clock-driven phase update and the per-layer phases and shifts.
+     */
+    @Benchmark
+    public float advancePhase() {
+        mTimeNanos += FRAME_NANOS;
+        mModel.setTime(mTimeNanos);
+        float shift = 0;
+        for (int layer = 0; layer < mModel.getLayerCount(); layer++) {
+            shift += mModel.getShift(layer, mModel.getLayerPhase(layer));
+        }
+        return shift;
+    }
+}
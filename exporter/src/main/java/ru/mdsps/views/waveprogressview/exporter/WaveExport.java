@@ -0,0 +1,171 @@
+package ru.mdsps.views.waveprogressview.exporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+import ru.mdsps.views.waveprogressview.WaveModel;
+
+/**
+ * Command line front end of {@link WaveFrameExporter}. Options follow the
+ * {@code wpv_*} attributes:
+ * <pre>
+ * --out DIR|FILE       PNG directory, or the atlas file with --atlas
+ * --prefix NAME        file name prefix of PNG frames (frame)
+ * --atlas COLUMNS      write one sprite atlas instead of single frames
+ * --size W[xH]         frame size in px (200)
+ * --type rectangle|oval|square|circle
+ * --corner-radius PX   --border-width PX
+ * --wave-color #AARRGGBB   --border-color #AARRGGBB   --background #AARRGGBB
+ * --wave-length large|middle|small   --wave-height large|middle|small
+ * --frames N   --cycles N   --progress FROM[:TO]   --threads N
+ * </pre>
+ */
+
+public final class WaveExport {
+
+    private WaveExport() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        WaveExportStyle style = new WaveExportStyle();
+        File out = new File("frames");
+        String prefix = "frame";
+        int atlasColumns = 0;
+        int frames = 48;
+        int cycles = 1;
+        float progressFrom = 50;
+        float progressTo = 50;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + name);
+            }
+            String value = args[i + 1];
+            switch (name) {
+                case "--out":
+                    out = new File(value);
+                    break;
+                case "--prefix":
+                    prefix = value;
+                    break;
+                case "--atlas":
+                    atlasColumns = Integer.parseInt(value);
+                    break;
+                case "--size":
+                    int x = value.indexOf('x');
+                    if (x < 0) {
+                        style.setSize(Integer.parseInt(value), Integer.parseInt(value));
+                    } else {
+                        style.setSize(Integer.parseInt(value.substring(0, x)),
+                                Integer.parseInt(value.substring(x + 1)));
+                    }
+                    break;
+                case "--type":
+                    style.setViewType(parseViewType(value));
+                    break;
+                case "--corner-radius":
+                    style.setAllCornerRadius(Float.parseFloat(value));
+                    break;
+                case "--border-width":
+                    style.setBorderWidth(Float.parseFloat(value));
+                    break;
+                case "--wave-color":
+                    style.setWaveColor(parseColor(value));
+                    break;
+                case "--border-color":
+                    style.setBorderColor(parseColor(value));
+                    break;
+                case "--background":
+                    style.setBackgroundColor(parseColor(value));
+                    break;
+                case "--wave-length":
+                    style.setWaveLengthMode(parseMode(value));
+                    break;
+                case "--wave-height":
+                    style.setWaveHeightMode(parseMode(value));
+                    break;
+                case "--frames":
+                    frames = Integer.parseInt(value);
+                    break;
+                case "--cycles":
+                    cycles = Integer.parseInt(value);
+                    break;
+                case "--progress":
+                    int colon = value.indexOf(':');
+                    progressFrom = Float.parseFloat(colon < 0 ? value : value.substring(0, colon));
+                    progressTo = colon < 0 ? progressFrom : Float.parseFloat(value.substring(colon + 1));
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+
+        WaveFrameExporter exporter = new WaveFrameExporter(style);
+        exporter.setFrameCount(frames);
+        exporter.setWaveCycles(cycles);
+        exporter.setProgress(progressFrom, progressTo);
+        exporter.setThreadCount(threads);
+        exporter.setMaxFramesInFlight(threads * 2);
+
+        long start = System.nanoTime();
+        if (atlasColumns > 0) {
+            File parent = out.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Cannot create " + parent);
+            }
+            exporter.exportSpriteAtlas(out, atlasColumns);
+        } else {
+            exporter.exportPngSequence(out, prefix);
+        }
+        System.out.println(String.format(Locale.US, "%d frames to %s in %d ms", frames, out,
+                (System.nanoTime() - start) / 1000000));
+    }
+
+    private static int parseViewType(String value) {
+        switch (value) {
+            case "rectangle":
+                return WaveExportStyle.VIEW_TYPE_RECTANGLE;
+            case "oval":
+                return WaveExportStyle.VIEW_TYPE_OVAL;
+            case "square":
+                return WaveExportStyle.VIEW_TYPE_SQUARE;
+            case "circle":
+                return WaveExportStyle.VIEW_TYPE_CIRCLE;
+            default:
+                throw new IllegalArgumentException("Unknown type: " + value);
+        }
+    }
+
+    private static int parseMode(String value) {
+        switch (value) {
+            case "large":
+                return WaveModel.MODE_LARGE;
+            case "middle":
+                return WaveModel.MODE_MIDDLE;
+            case "small":
+                return WaveModel.MODE_LITTLE;
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + value);
+        }
+    }
+
+    /**
+     * Parses {@code #RRGGBB} and {@code #AARRGGBB} like Android's Color.
+     */
+    private static int parseColor(String value) {
+        if (!value.startsWith("#") || value.length() != 7 && value.length() != 9) {
+            throw new IllegalArgumentException("Unknown color: " + value);
+        }
+        long color = Long.parseLong(value.substring(1), 16);
+        if (value.length() == 7) {
+            color |= 0xFF000000L;
+        }
+        return (int) color;
+    }
+}
@@ -0,0 +1,190 @@
+package ru.mdsps.views.waveprogressview.exporter;
+
+import ru.mdsps.views.waveprogressview.WaveLayer;
+import ru.mdsps.views.waveprogressview.WaveModel;
+
+/**
+ * Look of an exported gauge, the JVM counterpart of the {@code wpv_*}
+ * attributes. Sizes are in pixels, colors are ARGB ints as in Android and
+ * the shape and mode constants have the values of the XML enums.
+ */
+
+public final class WaveExportStyle {
+
+    public static final int VIEW_TYPE_RECTANGLE = 1;
+    public static final int VIEW_TYPE_OVAL = 2;
+    public static final int VIEW_TYPE_SQUARE = 3;
+    public static final int VIEW_TYPE_CIRCLE = 4;
+
+    private int width = 200;
+    private int height = 200;
+    private int viewType = VIEW_TYPE_RECTANGLE;
+    private float topLeftCornerRadius;
+    private float topRightCornerRadius;
+    private float bottomLeftCornerRadius;
+    private float bottomRightCornerRadius;
+    private float borderWidth;
+    private int borderColor = 0xFF000000;
+    private int waveColor = 0xFF0000FF;
+    private int backgroundColor;
+    private int waveLengthMode = WaveModel.MODE_LARGE;
+    private int waveHeightMode = WaveModel.MODE_LARGE;
+    private WaveLayer[] layers;
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Size of the whole frame. Square and circle gauges use the smaller side,
+     * like the view does when it is measured.
+     */
+    public void setSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size must be positive: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getViewType() {
+        return viewType;
+    }
+
+    public void setViewType(int viewType) {
+        if (viewType < VIEW_TYPE_RECTANGLE || viewType > VIEW_TYPE_CIRCLE) {
+            throw new IllegalArgumentException("Unknown view type: " + viewType);
+        }
+        this.viewType = viewType;
+    }
+
+    public void setAllCornerRadius(float allCornerRadius) {
+        topLeftCornerRadius = allCornerRadius;
+        topRightCornerRadius = allCornerRadius;
+        bottomLeftCornerRadius = allCornerRadius;
+        bottomRightCornerRadius = allCornerRadius;
+    }
+
+    public float getTopLeftCornerRadius() {
+        return topLeftCornerRadius;
+    }
+
+    public void setTopLeftCornerRadius(float topLeftCornerRadius) {
+        this.topLeftCornerRadius = topLeftCornerRadius;
+    }
+
+    public float getTopRightCornerRadius() {
+        return topRightCornerRadius;
+    }
+
+    public void setTopRightCornerRadius(float topRightCornerRadius) {
+        this.topRightCornerRadius = topRightCornerRadius;
+    }
+
+    public float getBottomLeftCornerRadius() {
+        return bottomLeftCornerRadius;
+    }
+
+    public void setBottomLeftCornerRadius(float bottomLeftCornerRadius) {
+        this.bottomLeftCornerRadius = bottomLeftCornerRadius;
+    }
+
+    public float getBottomRightCornerRadius() {
+        return bottomRightCornerRadius;
+    }
+
+    public void setBottomRightCornerRadius(float bottomRightCornerRadius) {
+        this.bottomRightCornerRadius = bottomRightCornerRadius;
+    }
+
+    public float getBorderWidth() {
+        return borderWidth;
+    }
+
+    public void setBorderWidth(float borderWidth) {
+        if (borderWidth < 0) {
+            throw new IllegalArgumentException("Border width must not be negative: " + borderWidth);
+        }
+        this.borderWidth = borderWidth;
+    }
+
+    public int getBorderColor() {
+        return borderColor;
+    }
+
+    public void setBorderColor(int borderColor) {
+        this.borderColor = borderColor;
+    }
+
+    public int getWaveColor() {
+        return waveColor;
+    }
+
+    public void setWaveColor(int waveColor) {
+        this.waveColor = waveColor;
+    }
+
+    public int getBackgroundColor() {
+        return backgroundColor;
+    }
+
+    /**
+     * @param backgroundColor fill behind the waves, transparent by default
+     */
+    public void setBackgroundColor(int backgroundColor) {
+        this.backgroundColor = backgroundColor;
+    }
+
+    public int getWaveLengthMode() {
+        return waveLengthMode;
+    }
+
+    public void setWaveLengthMode(int waveLengthMode) {
+        this.waveLengthMode = waveLengthMode;
+    }
+
+    public int getWaveHeightMode() {
+        return waveHeightMode;
+    }
+
+    public void setWaveHeightMode(int waveHeightMode) {
+        this.waveHeightMode = waveHeightMode;
+    }
+
+    public WaveLayer[] getLayers() {
+        return layers == null ? null : layers.clone();
+    }
+
+    /**
+     * @param layers waves from front to back, or null for the default three
+     */
+    public void setLayers(WaveLayer[] layers) {
+        if (layers != null && layers.length == 0) {
+            throw new IllegalArgumentException("At least one layer is required");
+        }
+        this.layers = layers == null ? null : layers.clone();
+    }
+
+    WaveExportStyle copy() {
+        WaveExportStyle style = new WaveExportStyle();
+        style.width = width;
+        style.height = height;
+        style.viewType = viewType;
+        style.topLeftCornerRadius = topLeftCornerRadius;
+        style.topRightCornerRadius = topRightCornerRadius;
+        style.bottomLeftCornerRadius = bottomLeftCornerRadius;
+        style.bottomRightCornerRadius = bottomRightCornerRadius;
+        style.borderWidth = borderWidth;
+        style.borderColor = borderColor;
+        style.waveColor = waveColor;
+        style.backgroundColor = backgroundColor;
+        style.waveLengthMode = waveLengthMode;
+        style.waveHeightMode = waveHeightMode;
+        style.layers = layers;
+        return style;
+    }
+}
@@ -0,0 +1,238 @@
+package ru.mdsps.views.waveprogressview.exporter;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders a sequence of frames of one gauge to PNG files or to a sprite
+ * atlas. Frames are independent and are rendered on a fixed thread pool.
+ * At most {@link #getMaxFramesInFlight()} frame buffers exist at a time and
+ * PNG frames are written as soon as they are done, so memory does not grow
+ * with the length of the sequence.
+ * <p>
+ * Frame {@code i} of {@code n} shows the front wave at
+ * {@code 2 * PI * cycles * i / n} and the progress interpolated linearly
+ * from the first to the last frame. With a whole number of cycles and a
+ * constant progress the sequence loops seamlessly.
+ */
+
+public final class WaveFrameExporter {
+
+    private final WaveExportStyle mStyle;
+
+    private int mFrameCount = 48;
+    private int mWaveCycles = 1;
+    private float mProgressFrom = 50;
+    private float mProgressTo = 50;
+    private int mThreadCount = Runtime.getRuntime().availableProcessors();
+    private int mMaxFramesInFlight = mThreadCount * 2;
+
+    /**
+     * @param style look of the gauge; later changes to it are not picked up
+     */
+    public WaveFrameExporter(WaveExportStyle style) {
+        mStyle = style.copy();
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public void setFrameCount(int frameCount) {
+        if (frameCount <= 0) {
+            throw new IllegalArgumentException("Frame count must be positive: " + frameCount);
+        }
+        this.mFrameCount = frameCount;
+    }
+
+    public int getWaveCycles() {
+        return mWaveCycles;
+    }
+
+    /**
+     * @param waveCycles wave periods the front wave moves over the sequence
+     */
+    public void setWaveCycles(int waveCycles) {
+        this.mWaveCycles = waveCycles;
+    }
+
+    public float getProgressFrom() {
+        return mProgressFrom;
+    }
+
+    public float getProgressTo() {
+        return mProgressTo;
+    }
+
+    public void setProgress(float from, float to) {
+        this.mProgressFrom = from;
+        this.mProgressTo = to;
+    }
+
+    public int getThreadCount() {
+        return mThreadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        this.mThreadCount = threadCount;
+    }
+
+    public int getMaxFramesInFlight() {
+        return mMaxFramesInFlight;
+    }
+
+    /**
+     * @param maxFramesInFlight frame buffers rendered or written at once
+     */
+    public void setMaxFramesInFlight(int maxFramesInFlight) {
+        if (maxFramesInFlight <= 0) {
+            throw new IllegalArgumentException("Frames in flight must be positive: " + maxFramesInFlight);
+        }
+        this.mMaxFramesInFlight = maxFramesInFlight;
+    }
+
+    /**
+     * Writes {@code prefix0000.png}, {@code prefix0001.png}, ... into
+     * {@code directory}.
+     *
+     * @return the files written, in frame order
+     */
+    public List<File> exportPngSequence(final File directory, final String prefix)
+            throws IOException, InterruptedException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        final List<File> files = new ArrayList<>(mFrameCount);
+        for (int i = 0; i < mFrameCount; i++) {
+            files.add(new File(directory, String.format(Locale.US, "%s%04d.png", prefix, i)));
+        }
+        run(new FrameSink() {
+            @Override
+            public void accept(int index, BufferedImage frame) throws IOException {
+                if (!ImageIO.write(frame, "png", files.get(index))) {
+                    throw new IOException("No PNG writer available");
+                }
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Writes all frames into one PNG, row by row, {@code columns} frames per
+     * row. The atlas itself is the only buffer that grows with the
+     * sequence.
+     */
+    public void exportSpriteAtlas(File file, final int columns)
+            throws IOException, InterruptedException {
+        if (columns <= 0) {
+            throw new IllegalArgumentException("Columns must be positive: " + columns);
+        }
+        WaveFrameRasterizer probe = new WaveFrameRasterizer(mStyle);
+        final int frameWidth = probe.getFrameWidth();
+        final int frameHeight = probe.getFrameHeight();
+        int rows = (mFrameCount + columns - 1) / columns;
+        final BufferedImage atlas = new BufferedImage(frameWidth * Math.min(columns, mFrameCount),
+                frameHeight * rows, BufferedImage.TYPE_INT_ARGB);
+        run(new FrameSink() {
+            @Override
+            public void accept(int index, BufferedImage frame) {
+                int x = index % columns * frameWidth;
+                int y = index / columns * frameHeight;
+                synchronized (atlas) {
+                    atlas.getRaster().setDataElements(x, y, frame.getRaster());
+                }
+            }
+        });
+        if (!ImageIO.write(atlas, "png", file)) {
+            throw new IOException("No PNG writer available");
+        }
+    }
+
+    private interface FrameSink {
+        void accept(int index, BufferedImage frame) throws IOException;
+    }
+
+    /**
+     * Renders every frame and hands it to the sink on a pool thread. Submission
+     * blocks while {@link #getMaxFramesInFlight()} frames are pending, and
+     * frame buffers are recycled through a queue of the same size.
+     */
+    private void run(final FrameSink sink) throws IOException, InterruptedException {
+        final Semaphore inFlight = new Semaphore(mMaxFramesInFlight);
+        final BlockingQueue<BufferedImage> buffers = new ArrayBlockingQueue<>(mMaxFramesInFlight);
+        final ThreadLocal<WaveFrameRasterizer> rasterizers = new ThreadLocal<WaveFrameRasterizer>() {
+            @Override
+            protected WaveFrameRasterizer initialValue() {
+                return new WaveFrameRasterizer(mStyle);
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(mThreadCount);
+        List<Future<Void>> results = new ArrayList<>(mFrameCount);
+        try {
+            for (int i = 0; i < mFrameCount; i++) {
+                inFlight.acquire();
+                final int index = i;
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            WaveFrameRasterizer rasterizer = rasterizers.get();
+                            BufferedImage frame = buffers.poll();
+                            if (frame == null) {
+                                frame = rasterizer.createFrame();
+                            }
+                            rasterizer.draw(frame, getPhase(index), getProgress(index));
+                            sink.accept(index, frame);
+                            buffers.offer(frame);
+                            return null;
+                        } finally {
+                            inFlight.release();
+                        }
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("Frame export failed", cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    float getPhase(int index) {
+        return (float) (2 * Math.PI * mWaveCycles * index / mFrameCount);
+    }
+
+    float getProgress(int index) {
+        if (mFrameCount == 1) {
+            return mProgressFrom;
+        }
+        return mProgressFrom + (mProgressTo - mProgressFrom) * index / (mFrameCount - 1);
+    }
+}
@@ -0,0 +1,239 @@
+package ru.mdsps.views.waveprogressview.exporter;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+
+import ru.mdsps.views.waveprogressview.WaveModel;
+
+/**
+ * Draws single frames of a gauge with Java2D, following the layout of the
+ * Android renderer: border centered on the outer edge, waves clipped to
+ * the inner shape. Not thread-safe; the exporter keeps one per thread.
+ */
+
+final class WaveFrameRasterizer {
+
+    // Fine sampling, frames are rendered once
+    private final static float STEP = 2;
+    // Control point distance of a cubic quarter circle
+    private final static double KAPPA = 0.5522847498;
+
+    private final WaveExportStyle mStyle;
+    private final WaveModel mModel = new WaveModel();
+    private final int mFrameWidth;
+    private final int mFrameHeight;
+
+    private final Shape mBackground;
+    private final Area mClip;
+    private final Shape mBorder;
+    private final Rectangle2D.Float mBounds = new Rectangle2D.Float();
+    private final Color[] mLayerColors;
+    private float[] mOutline = new float[0];
+    private final Path2D.Float mWave = new Path2D.Float();
+    private final AffineTransform mTransform = new AffineTransform();
+
+    WaveFrameRasterizer(WaveExportStyle style) {
+        mStyle = style;
+        int width = style.getWidth();
+        int height = style.getHeight();
+        boolean square = style.getViewType() == WaveExportStyle.VIEW_TYPE_SQUARE
+                || style.getViewType() == WaveExportStyle.VIEW_TYPE_CIRCLE;
+        if (square) {
+            width = Math.min(width, height);
+            height = width;
+        }
+        mFrameWidth = width;
+        mFrameHeight = height;
+
+        float borderWidth = style.getBorderWidth();
+        Rectangle2D.Float borderBounds = new Rectangle2D.Float();
+        if (borderWidth > 0) {
+            float half = borderWidth / 2;
+            borderBounds.setRect(half, half, width - borderWidth, height - borderWidth);
+            float left = (int) (half + half);
+            float top = (int) (half + half);
+            float right = (int) (width - half - half);
+            float bottom = (int) (height - half - half);
+            mBounds.setRect(left, top, right - left, bottom - top);
+        } else {
+            borderBounds.setRect(0, 0, width, height);
+            mBounds.setRect(borderBounds);
+        }
+
+        boolean rounded = style.getViewType() == WaveExportStyle.VIEW_TYPE_RECTANGLE
+                || style.getViewType() == WaveExportStyle.VIEW_TYPE_SQUARE;
+        float tl = style.getTopLeftCornerRadius();
+        float tr = style.getTopRightCornerRadius();
+        float br = style.getBottomRightCornerRadius();
+        float bl = style.getBottomLeftCornerRadius();
+        if (rounded) {
+            mBackground = roundRect(borderBounds, tl - borderWidth, tr - borderWidth,
+                    br - borderWidth, bl - borderWidth);
+            mClip = new Area(roundRect(mBounds, tl - borderWidth, tr - borderWidth,
+                    br - borderWidth, bl - borderWidth));
+            mBorder = roundRect(borderBounds, tl, tr, br, bl);
+        } else {
+            mBackground = new Ellipse2D.Float(borderBounds.x, borderBounds.y,
+                    borderBounds.width, borderBounds.height);
+            mClip = new Area(new Ellipse2D.Float(mBounds.x, mBounds.y, mBounds.width, mBounds.height));
+            mBorder = mBackground;
+        }
+
+        mModel.setSize(mBounds.width, mBounds.height);
+        mModel.setStep(STEP);
+        mModel.setLengthMode(style.getWaveLengthMode());
+        mModel.setHeightMode(style.getWaveHeightMode());
+        mModel.setLayers(style.getLayers());
+
+        int rgb = style.getWaveColor() & 0xFFFFFF;
+        mLayerColors = new Color[mModel.getLayerCount()];
+        for (int i = 0; i < mLayerColors.length; i++) {
+            mLayerColors[i] = new Color(mModel.getLayer(i).getAlpha() << 24 | rgb, true);
+        }
+    }
+
+    int getFrameWidth() {
+        return mFrameWidth;
+    }
+
+    int getFrameHeight() {
+        return mFrameHeight;
+    }
+
+    BufferedImage createFrame() {
+        return new BufferedImage(mFrameWidth, mFrameHeight, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Draws the gauge into {@code frame}, replacing its content.
+     *
+     * @param phase    phase of the front wave in radians
+     * @param progress fill level in percent
+     */
+    void draw(BufferedImage frame, float phase, float progress) {
+        Graphics2D g = frame.createGraphics();
+        try {
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, frame.getWidth(), frame.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+
+            if ((mStyle.getBackgroundColor() >>> 24) != 0) {
+                g.setColor(new Color(mStyle.getBackgroundColor(), true));
+                g.fill(mBackground);
+            }
+
+            mModel.setProgress(progress);
+            mModel.setPhase(phase);
+            float level = mModel.getLevel();
+            // Back to front, the front wave ends on top
+            for (int layer = mModel.getLayerCount() - 1; layer >= 0; layer--) {
+                Area wave = new Area(buildWave(layer, level));
+                wave.intersect(mClip);
+                g.setColor(mLayerColors[layer]);
+                g.fill(wave);
+            }
+
+            if (mStyle.getBorderWidth() > 0) {
+                g.setColor(new Color(mStyle.getBorderColor(), true));
+                g.setStroke(new BasicStroke(mStyle.getBorderWidth()));
+                g.draw(mBorder);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private Shape buildWave(int layer, float level) {
+        int size = mModel.getOutlineVertexCount(layer) * 2;
+        if (mOutline.length < size) {
+            mOutline = new float[size];
+        }
+        int count = mModel.fillOutline(layer, mOutline, 0);
+        float height = mModel.getHeight();
+
+        Path2D.Float path = mWave;
+        path.reset();
+        path.moveTo(0, height);
+        for (int i = 0; i < count; i += 2) {
+            path.lineTo(mOutline[i], mOutline[i + 1]);
+        }
+        path.lineTo(mOutline[count - 2], height);
+        path.closePath();
+
+        float shift = mModel.getShift(layer, mModel.getLayerPhase(layer));
+        mTransform.setToTranslation(mBounds.x + shift, mBounds.y + level);
+        return path.createTransformedShape(mTransform);
+    }
+
+    /**
+     * Rounded rectangle with its own radius per corner. Like Skia, radii that
+     * do not fit are scaled down together and negative ones count as 0.
+     */
+    static Path2D.Float roundRect(Rectangle2D.Float r, float tl, float tr, float br, float bl) {
+        tl = Math.max(0, tl);
+        tr = Math.max(0, tr);
+        br = Math.max(0, br);
+        bl = Math.max(0, bl);
+        float scale = 1;
+        scale = fit(scale, r.width, tl + tr);
+        scale = fit(scale, r.width, bl + br);
+        scale = fit(scale, r.height, tl + bl);
+        scale = fit(scale, r.height, tr + br);
+        tl *= scale;
+        tr *= scale;
+        br *= scale;
+        bl *= scale;
+
+        float left = r.x;
+        float top = r.y;
+        float right = r.x + r.width;
+        float bottom = r.y + r.height;
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(left + tl, top);
+        path.lineTo(right - tr, top);
+        corner(path, right - tr, top, right, top + tr, tr, true);
+        path.lineTo(right, bottom - br);
+        corner(path, right, bottom - br, right - br, bottom, br, false);
+        path.lineTo(left + bl, bottom);
+        corner(path, left + bl, bottom, left, bottom - bl, bl, true);
+        path.lineTo(left, top + tl);
+        corner(path, left, top + tl, left + tl, top, tl, false);
+        path.closePath();
+        return path;
+    }
+
+    private static float fit(float scale, float side, float sum) {
+        return sum > side && sum > 0 ? Math.min(scale, side / sum) : scale;
+    }
+
+    /**
+     * Quarter circle from (x0, y0) to (x1, y1). The first control point
+     * continues the incoming edge, horizontal or vertical.
+     */
+    private static void corner(Path2D.Float path, float x0, float y0, float x1, float y1,
+                               float radius, boolean horizontalStart) {
+        if (radius <= 0) {
+            return;
+        }
+        float k = (float) (radius * KAPPA);
+        float dx = Math.signum(x1 - x0);
+        float dy = Math.signum(y1 - y0);
+        if (horizontalStart) {
+            path.curveTo(x0 + dx * k, y0, x1, y1 - dy * k, x1, y1);
+        } else {
+            path.curveTo(x0, y0 + dy * k, x1 - dx * k, y1, x1, y1);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package ru.mdsps.views.waveprogressview;
+
+/**
+ * Picks which vsync frames to draw so that the average frame rate matches
+ * the target on any display refresh rate.
+ */
+
+final class FramePacer {
+
+    private final static long FRAME_SLACK_NANOS = 2000000L;
+
+    private long mNextFrameTimeNanos;
+
+    void reset() {
+        mNextFrameTimeNanos = 0;
+    }
+
+    /**
+     * @return true if the frame at {@code frameTimeNanos} should be drawn
+     */
+    boolean shouldDraw(long frameTimeNanos, int frameRate) {
+        long interval = 1000000000L / frameRate;
+        if (frameTimeNanos < mNextFrameTimeNanos - FRAME_SLACK_NANOS) {
+            return false;
+        }
+        mNextFrameTimeNanos = frameTimeNanos - mNextFrameTimeNanos > interval
+                ? frameTimeNanos + interval
+                : mNextFrameTimeNanos + interval;
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+
+/**
+ * Pool of wave render targets shared between WaveProgressView instances.
+ * A view hands its bitmap back when it is detached or resized, and the next
+ * view of the same size picks it up instead of allocating a new one.
+ */
+
+public final class WaveBitmapPool {
+
+    private final static int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+    private static WaveBitmapPool sDefault;
+
+    private final ArrayList<Bitmap> mFree = new ArrayList<>();
+    private final int mMaxBytes;
+    private int mBytes;
+
+    public WaveBitmapPool(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    public static synchronized WaveBitmapPool getDefault() {
+        if (sDefault == null) {
+            sDefault = new WaveBitmapPool(DEFAULT_MAX_BYTES);
+        }
+        return sDefault;
+    }
+
+    public synchronized Bitmap acquire(int width, int height, Bitmap.Config config) {
+        for (int i = mFree.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = mFree.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height
+                    && bitmap.getConfig() == config) {
+                mFree.remove(i);
+                mBytes -= bitmap.getByteCount();
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        int size = bitmap.getByteCount();
+        if (size > mMaxBytes) {
+            bitmap.recycle();
+            return;
+        }
+        mFree.add(bitmap);
+        mBytes += size;
+        trimToSize(mMaxBytes);
+    }
+
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(int maxBytes) {
+        while (mBytes > maxBytes && !mFree.isEmpty()) {
+            Bitmap eldest = mFree.remove(0);
+            mBytes -= eldest.getByteCount();
+            eldest.recycle();
+        }
+    }
+}
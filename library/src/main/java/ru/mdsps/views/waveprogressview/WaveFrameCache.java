@@ -0,0 +1,168 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * Memory-bounded LRU cache of pre-rendered wave frames. The wave layers all
+ * move at the same speed, so for a given size and wave modes the picture
+ * repeats once per cycle; views with the same configuration share the
+ * frames they render. Frames are alpha masks, so views of different colors
+ * share them too.
+ */
+
+public final class WaveFrameCache {
+
+    private static WaveFrameCache sDefault;
+
+    private final LruCache<Key, Bitmap> mCache;
+    private final WaveBitmapPool mBitmapPool;
+
+    /**
+     * Creates a cache that leaves evicted frames to the GC, so it can be
+     * shared between views and threads.
+     */
+    public WaveFrameCache(int maxBytes) {
+        mBitmapPool = null;
+        mCache = createCache(maxBytes);
+    }
+
+    /**
+     * Creates a cache that hands evicted frames back to the given pool and
+     * renders new ones into bitmaps taken from it. Only for a cache used by
+     * a single view: a frame evicted from a shared one may still be drawn
+     * by another view, or on another thread, when the pool hands it out
+     * again or recycles it.
+     */
+    public WaveFrameCache(int maxBytes, WaveBitmapPool bitmapPool) {
+        if (bitmapPool == null) {
+            throw new IllegalArgumentException("Bitmap pool must not be null");
+        }
+        mBitmapPool = bitmapPool;
+        mCache = createCache(maxBytes);
+    }
+
+    private LruCache<Key, Bitmap> createCache(int maxBytes) {
+        return new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return value.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Key key, Bitmap oldValue, Bitmap newValue) {
+                if (mBitmapPool != null && oldValue != newValue) {
+                    mBitmapPool.release(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * Cache shared by all views that do not set their own, limited to an
+     * eighth of the heap.
+     */
+    public static synchronized WaveFrameCache getDefault() {
+        if (sDefault == null) {
+            sDefault = new WaveFrameCache((int) (Runtime.getRuntime().maxMemory() / 8));
+        }
+        return sDefault;
+    }
+
+    Bitmap get(Key key) {
+        return mCache.get(key);
+    }
+
+    void put(Key key, Bitmap frame) {
+        mCache.put(key.copy(), frame);
+    }
+
+    /**
+     * Whether a whole loop of alpha frames of the given size fits. Larger
+     * loops would evict their own frames before they come round again.
+     */
+    boolean canHold(int width, int height, int frameCount) {
+        return (long) width * height * frameCount <= mCache.maxSize();
+    }
+
+    /**
+     * Returns a bitmap for a new frame. Pooled bitmaps keep their old
+     * pixels, so callers clear it before drawing.
+     */
+    Bitmap acquireFrame(int width, int height, Bitmap.Config config) {
+        if (mBitmapPool == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        return mBitmapPool.acquire(width, height, config);
+    }
+
+    public void evictAll() {
+        mCache.evictAll();
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    public int maxSize() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * Identifies one frame of one configuration. Views keep a single instance
+     * for lookups and the cache stores copies.
+     */
+    static final class Key {
+
+        int width;
+        int height;
+        int heightMode;
+        int lengthMode;
+        int layersHash;
+        int frameCount;
+        int progressBucket;
+        int frameIndex;
+
+        Key copy() {
+            Key key = new Key();
+            key.width = width;
+            key.height = height;
+            key.heightMode = heightMode;
+            key.lengthMode = lengthMode;
+            key.layersHash = layersHash;
+            key.frameCount = frameCount;
+            key.progressBucket = progressBucket;
+            key.frameIndex = frameIndex;
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && height == key.height
+                    && heightMode == key.heightMode && lengthMode == key.lengthMode
+                    && layersHash == key.layersHash
+                    && frameCount == key.frameCount && progressBucket == key.progressBucket
+                    && frameIndex == key.frameIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = width;
+            result = 31 * result + height;
+            result = 31 * result + heightMode;
+            result = 31 * result + lengthMode;
+            result = 31 * result + layersHash;
+            result = 31 * result + frameCount;
+            result = 31 * result + progressBucket;
+            result = 31 * result + frameIndex;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.Arrays;
+
+/**
+ * Opt-in frame statistics for a wave view: draw durations, frames over
+ * budget, wave bitmap allocations, wave outline rebuilds and frame cache
+ * hits. While attached it
+ * also emits systrace sections for the geometry, wave and composite stages.
+ * Views without metrics only pay a null check.
+ */
+
+public final class WaveFrameMetrics {
+
+    private final static int HISTORY_SIZE = 256;
+    private final static long DEFAULT_FRAME_BUDGET_NANOS = 16666667L;
+
+    final static String SECTION_GEOMETRY = "WaveProgress:geometry";
+    final static String SECTION_WAVES = "WaveProgress:waves";
+    final static String SECTION_COMPOSITE = "WaveProgress:composite";
+
+    /**
+     * Receives every drawn frame, on the thread that drew it.
+     */
+    public interface Listener {
+        void onFrameDrawn(WaveFrameMetrics metrics, long drawNanos);
+    }
+
+    private final long[] mHistory = new long[HISTORY_SIZE];
+    private int mHistoryCount;
+    private int mHistoryIndex;
+
+    private long mFrameCount;
+    private long mTotalDrawNanos;
+    private long mOverBudgetCount;
+    private long mBitmapAllocationCount;
+    private long mGeometryRebuildCount;
+    private long mCacheHitCount;
+    private long mCacheMissCount;
+
+    private long mFrameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+    private boolean mTracingEnabled = true;
+    private Listener mListener;
+
+    public long getFrameBudgetNanos() {
+        return mFrameBudgetNanos;
+    }
+
+    /**
+     * @param frameBudgetNanos draw time above which a frame counts as over budget
+     */
+    public void setFrameBudgetNanos(long frameBudgetNanos) {
+        if (frameBudgetNanos <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive: " + frameBudgetNanos);
+        }
+        this.mFrameBudgetNanos = frameBudgetNanos;
+    }
+
+    public boolean isTracingEnabled() {
+        return mTracingEnabled;
+    }
+
+    public void setTracingEnabled(boolean tracingEnabled) {
+        this.mTracingEnabled = tracingEnabled;
+    }
+
+    public Listener getListener() {
+        return mListener;
+    }
+
+    public void setListener(Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * Copies the current counters. The p99 covers the last 256 frames.
+     */
+    public synchronized Snapshot getSnapshot() {
+        long[] history = Arrays.copyOf(mHistory, mHistoryCount);
+        Arrays.sort(history);
+        long p99 = history.length > 0 ? history[(int) Math.ceil(history.length * 0.99) - 1] : 0;
+        long average = mFrameCount > 0 ? mTotalDrawNanos / mFrameCount : 0;
+        return new Snapshot(mFrameCount, average, p99, mOverBudgetCount,
+                mBitmapAllocationCount, mGeometryRebuildCount, mCacheHitCount, mCacheMissCount);
+    }
+
+    public synchronized void reset() {
+        mHistoryCount = 0;
+        mHistoryIndex = 0;
+        mFrameCount = 0;
+        mTotalDrawNanos = 0;
+        mOverBudgetCount = 0;
+        mBitmapAllocationCount = 0;
+        mGeometryRebuildCount = 0;
+        mCacheHitCount = 0;
+        mCacheMissCount = 0;
+    }
+
+    void onFrameDrawn(long drawNanos) {
+        synchronized (this) {
+            mFrameCount++;
+            mTotalDrawNanos += drawNanos;
+            if (drawNanos > mFrameBudgetNanos) {
+                mOverBudgetCount++;
+            }
+            mHistory[mHistoryIndex] = drawNanos;
+            mHistoryIndex = (mHistoryIndex + 1) % HISTORY_SIZE;
+            mHistoryCount = Math.min(mHistoryCount + 1, HISTORY_SIZE);
+        }
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onFrameDrawn(this, drawNanos);
+        }
+    }
+
+    synchronized void onBitmapAllocated() {
+        mBitmapAllocationCount++;
+    }
+
+    synchronized void onGeometryRebuilt() {
+        mGeometryRebuildCount++;
+    }
+
+    synchronized void onCacheHit() {
+        mCacheHitCount++;
+    }
+
+    synchronized void onCacheMiss() {
+        mCacheMissCount++;
+    }
+
+    void beginSection(String name) {
+        if (mTracingEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+    }
+
+    void endSection() {
+        if (mTracingEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Immutable copy of the counters, for export to app telemetry.
+     */
+    public static final class Snapshot {
+
+        private final long mFrameCount;
+        private final long mAverageDrawNanos;
+        private final long mP99DrawNanos;
+        private final long mOverBudgetCount;
+        private final long mBitmapAllocationCount;
+        private final long mGeometryRebuildCount;
+        private final long mCacheHitCount;
+        private final long mCacheMissCount;
+
+        Snapshot(long frameCount, long averageDrawNanos, long p99DrawNanos, long overBudgetCount,
+                 long bitmapAllocationCount, long geometryRebuildCount, long cacheHitCount,
+                 long cacheMissCount) {
+            mFrameCount = frameCount;
+            mAverageDrawNanos = averageDrawNanos;
+            mP99DrawNanos = p99DrawNanos;
+            mOverBudgetCount = overBudgetCount;
+            mBitmapAllocationCount = bitmapAllocationCount;
+            mGeometryRebuildCount = geometryRebuildCount;
+            mCacheHitCount = cacheHitCount;
+            mCacheMissCount = cacheMissCount;
+        }
+
+        public long getFrameCount() {
+            return mFrameCount;
+        }
+
+        public long getAverageDrawNanos() {
+            return mAverageDrawNanos;
+        }
+
+        public long getP99DrawNanos() {
+            return mP99DrawNanos;
+        }
+
+        public long getOverBudgetCount() {
+            return mOverBudgetCount;
+        }
+
+        public long getBitmapAllocationCount() {
+            return mBitmapAllocationCount;
+        }
+
+        /**
+         * Times a wave layer outline was sampled again. Only size, mode and
+         * layer changes should cause this, never progress or phase.
+         */
+        public long getGeometryRebuildCount() {
+            return mGeometryRebuildCount;
+        }
+
+        public long getCacheHitCount() {
+            return mCacheHitCount;
+        }
+
+        public long getCacheMissCount() {
+            return mCacheMissCount;
+        }
+
+        @Override
+        public String toString() {
+            return "WaveFrameMetrics.Snapshot{frames=" + mFrameCount
+                    + ", avgDrawNanos=" + mAverageDrawNanos
+                    + ", p99DrawNanos=" + mP99DrawNanos
+                    + ", overBudget=" + mOverBudgetCount
+                    + ", bitmapAllocations=" + mBitmapAllocationCount
+                    + ", geometryRebuilds=" + mGeometryRebuildCount
+                    + ", cacheHits=" + mCacheHitCount
+                    + ", cacheMisses=" + mCacheMissCount + "}";
+        }
+    }
+}
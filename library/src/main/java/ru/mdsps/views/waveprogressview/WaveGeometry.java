@@ -0,0 +1,85 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.graphics.Path;
+
+/**
+ * Cached outline of a single wave layer. The curve is sampled once for the view
+ * width plus one wave length, and every frame just shifts it by the phase,
+ * so no trigonometry runs while the wave is moving.
+ */
+
+final class WaveGeometry {
+
+    private final Path mPath = new Path();
+    private float[] mVertices = new float[0];
+
+    private float mWidth = -1;
+    private float mHeight = -1;
+    private float mWaveLength = -1;
+    private float mAmplitude = -1;
+    private float mStep = -1;
+    private boolean mCurved;
+
+    /**
+     * Rebuilds the outline if the size, wave modes, layer shape or step of
+     * the model changed.
+     *
+     * @param curved join the samples with quadratic curves instead of lines
+     * @return true if the path was rebuilt
+     */
+    boolean update(WaveModel model, int layer, boolean curved) {
+        if (matches(model, layer, curved)) {
+            return false;
+        }
+        float width = model.getWidth();
+        float height = model.getHeight();
+        float waveLength = model.getLayerWaveLength(layer);
+        float amplitude = model.getLayerAmplitude(layer);
+        float step = model.getStep();
+        mWidth = width;
+        mHeight = height;
+        mWaveLength = waveLength;
+        mAmplitude = amplitude;
+        mStep = step;
+        mCurved = curved;
+
+        int size = curved ? model.getOutlineCurveSize(layer) : model.getOutlineVertexCount(layer) * 2;
+        if (mVertices.length < size) {
+            mVertices = new float[size];
+        }
+
+        mPath.reset();
+        mPath.moveTo(0, height);
+        int count;
+        if (curved) {
+            count = model.fillOutlineCurve(layer, mVertices, 0);
+            mPath.lineTo(mVertices[0], mVertices[1]);
+            for (int i = 2; i < count; i += 4) {
+                mPath.quadTo(mVertices[i], mVertices[i + 1], mVertices[i + 2], mVertices[i + 3]);
+            }
+        } else {
+            count = model.fillOutline(layer, mVertices, 0);
+            for (int i = 0; i < count; i += 2) {
+                mPath.lineTo(mVertices[i], mVertices[i + 1]);
+            }
+        }
+        mPath.lineTo(mVertices[count - 2], height);
+        mPath.close();
+        return true;
+    }
+
+    /**
+     * True if the outline is the one {@link #update} would build for the
+     * layer, so geometries can be shared between models.
+     */
+    boolean matches(WaveModel model, int layer, boolean curved) {
+        return model.getWidth() == mWidth && model.getHeight() == mHeight
+                && model.getLayerWaveLength(layer) == mWaveLength
+                && model.getLayerAmplitude(layer) == mAmplitude
+                && model.getStep() == mStep && curved == mCurved;
+    }
+
+    Path getPath() {
+        return mPath;
+    }
+}
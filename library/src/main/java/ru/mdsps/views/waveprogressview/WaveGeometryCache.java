@@ -0,0 +1,48 @@
+package ru.mdsps.views.waveprogressview;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Wave outlines shared between renderers. Gauges of the same content size,
+ * wave modes and layers use the same {@link WaveGeometry} instead of
+ * sampling their own. The owner clears it when sizes change and drops
+ * outlines of old styles with {@link #retainAll(Collection)}. Not thread-safe.
+ */
+
+final class WaveGeometryCache {
+
+    private final List<WaveGeometry> mGeometries = new ArrayList<>();
+
+    /**
+     * Returns the outline of a model layer, built on first use.
+     */
+    WaveGeometry obtain(WaveModel model, int layer, boolean curved) {
+        for (int i = 0, size = mGeometries.size(); i < size; i++) {
+            WaveGeometry geometry = mGeometries.get(i);
+            if (geometry.matches(model, layer, curved)) {
+                return geometry;
+            }
+        }
+        WaveGeometry geometry = new WaveGeometry();
+        geometry.update(model, layer, curved);
+        mGeometries.add(geometry);
+        return geometry;
+    }
+
+    int size() {
+        return mGeometries.size();
+    }
+
+    /**
+     * Keeps only the given outlines, the ones renderers still refer to.
+     */
+    void retainAll(Collection<WaveGeometry> used) {
+        mGeometries.retainAll(used);
+    }
+
+    void clear() {
+        mGeometries.clear();
+    }
+}
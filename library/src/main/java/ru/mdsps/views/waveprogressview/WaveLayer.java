@@ -0,0 +1,77 @@
+package ru.mdsps.views.waveprogressview;
+
+/**
+ * One wave of the gauge. Amplitude and length are relative to the values of
+ * the view's wave height and wave length modes, so layers follow the size
+ * of the view. Immutable.
+ */
+
+public final class WaveLayer {
+
+    private final int mAlpha;
+    private final float mPhaseOffset;
+    private final float mAmplitudeScale;
+    private final float mLengthScale;
+
+    /**
+     * @param alpha          opacity of the wave color, 0..255
+     * @param phaseOffset    phase relative to the front wave, in radians
+     * @param amplitudeScale multiple of the wave height mode amplitude
+     * @param lengthScale    multiple of the wave length mode length
+     */
+    public WaveLayer(int alpha, float phaseOffset, float amplitudeScale, float lengthScale) {
+        if (alpha < 0 || alpha > 255) {
+            throw new IllegalArgumentException("Alpha must be in 0..255: " + alpha);
+        }
+        if (amplitudeScale < 0) {
+            throw new IllegalArgumentException("Amplitude scale must not be negative: " + amplitudeScale);
+        }
+        if (lengthScale <= 0) {
+            throw new IllegalArgumentException("Length scale must be positive: " + lengthScale);
+        }
+        mAlpha = alpha;
+        mPhaseOffset = phaseOffset;
+        mAmplitudeScale = amplitudeScale;
+        mLengthScale = lengthScale;
+    }
+
+    public int getAlpha() {
+        return mAlpha;
+    }
+
+    public float getPhaseOffset() {
+        return mPhaseOffset;
+    }
+
+    public float getAmplitudeScale() {
+        return mAmplitudeScale;
+    }
+
+    public float getLengthScale() {
+        return mLengthScale;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WaveLayer)) {
+            return false;
+        }
+        WaveLayer layer = (WaveLayer) o;
+        return mAlpha == layer.mAlpha
+                && Float.compare(mPhaseOffset, layer.mPhaseOffset) == 0
+                && Float.compare(mAmplitudeScale, layer.mAmplitudeScale) == 0
+                && Float.compare(mLengthScale, layer.mLengthScale) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mAlpha;
+        result = 31 * result + Float.floatToIntBits(mPhaseOffset);
+        result = 31 * result + Float.floatToIntBits(mAmplitudeScale);
+        result = 31 * result + Float.floatToIntBits(mLengthScale);
+        return result;
+    }
+}
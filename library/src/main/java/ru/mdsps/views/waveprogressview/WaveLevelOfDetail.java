@@ -0,0 +1,63 @@
+package ru.mdsps.views.waveprogressview;
+
+/**
+ * Decides how many wave layers to draw from recent draw times. Drops the
+ * rearmost layer while the smoothed draw time is over budget and brings it
+ * back once there is clear headroom again. A cool-down between changes keeps
+ * the layer count from flickering.
+ */
+
+final class WaveLevelOfDetail {
+
+    final static long DEFAULT_BUDGET_NANOS = 4000000L;
+
+    private final static float SMOOTHING = 0.1f;
+    private final static float HEADROOM = 0.5f;
+    private final static int COOL_DOWN_FRAMES = 60;
+
+    private long mBudgetNanos = DEFAULT_BUDGET_NANOS;
+    private float mAverageNanos;
+    private int mFramesSinceChange;
+    private int mMaxLayerCount = 1;
+    private int mLayerCount = 1;
+
+    long getBudgetNanos() {
+        return mBudgetNanos;
+    }
+
+    void setBudgetNanos(long budgetNanos) {
+        if (budgetNanos <= 0) {
+            throw new IllegalArgumentException("Budget must be positive: " + budgetNanos);
+        }
+        this.mBudgetNanos = budgetNanos;
+    }
+
+    int getLayerCount() {
+        return mLayerCount;
+    }
+
+    /**
+     * Starts over at full quality with the given number of layers.
+     */
+    void reset(int maxLayerCount) {
+        mAverageNanos = 0;
+        mFramesSinceChange = 0;
+        mMaxLayerCount = maxLayerCount;
+        mLayerCount = maxLayerCount;
+    }
+
+    void onFrameDrawn(long drawNanos) {
+        mAverageNanos = mAverageNanos == 0
+                ? drawNanos : mAverageNanos + (drawNanos - mAverageNanos) * SMOOTHING;
+        if (++mFramesSinceChange < COOL_DOWN_FRAMES) {
+            return;
+        }
+        if (mAverageNanos > mBudgetNanos && mLayerCount > 1) {
+            mLayerCount--;
+            mFramesSinceChange = 0;
+        } else if (mAverageNanos < mBudgetNanos * HEADROOM && mLayerCount < mMaxLayerCount) {
+            mLayerCount++;
+            mFramesSinceChange = 0;
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package ru.mdsps.views.waveprogressview;
+
+/**
+ * Platform-independent wave math: wave length and height for the modes,
+ * layer phases driven by a clock, and the sampled wave outlines. Fills
+ * caller-supplied buffers and allocates nothing, so any drawing backend can
+ * share it. Layers are ordered front to back. Not thread-safe.
+ */
+
+public final class WaveModel {
+
+    public static final int MODE_LARGE = 1;
+    public static final int MODE_MIDDLE = 2;
+    public static final int MODE_LITTLE = 3;
+
+    private final static int WAVE_HEIGHT_LARGE = 24;
+    private final static int WAVE_HEIGHT_MIDDLE = 16;
+    private final static int WAVE_HEIGHT_LITTLE = 8;
+
+    private final static float WAVE_LENGTH_MULTIPLE_LARGE = 1.5f;
+    private final static float WAVE_LENGTH_MULTIPLE_MIDDLE = 1f;
+    private final static float WAVE_LENGTH_MULTIPLE_LITTLE = 0.5f;
+
+    private final static int FIRST_WAVE_ALPHA = 180;
+    private final static int SECOND_WAVE_ALPHA = 90;
+    private final static int THIRD_WAVE_ALPHA = 70;
+
+    private final static float DEFAULT_STEP = 20;
+
+    // Quadratic segments per wave length; off by under 0.5% of the height
+    private final static int CURVE_SEGMENTS_PER_WAVE = 8;
+    private final static float DEFAULT_SPEED = 1.25f;
+
+    private final static int SINE_TABLE_SIZE = 1024;
+    private final static float PI2 = (float) (2 * Math.PI);
+    private final static float[] SINE_TABLE = new float[SINE_TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= SINE_TABLE_SIZE; i++) {
+            SINE_TABLE[i] = (float) Math.sin(PI2 * i / SINE_TABLE_SIZE);
+        }
+    }
+
+    private float mWidth;
+    private float mHeight;
+    private float mProgress = 50f;
+    private int mLengthMode = MODE_LARGE;
+    private int mHeightMode = MODE_LARGE;
+    private float mStep = DEFAULT_STEP;
+    private float mSpeed = DEFAULT_SPEED;
+
+    private WaveLayer[] mLayers = createDefaultLayers(WAVE_HEIGHT_LARGE);
+    private boolean mCustomLayers;
+
+    private float mPhase;
+    private long mTimeNanos;
+
+    /**
+     * The classic three waves. The back waves trail the front one by a
+     * phase that grows with the wave height.
+     */
+    private static WaveLayer[] createDefaultLayers(float amplitude) {
+        return new WaveLayer[] {
+                new WaveLayer(FIRST_WAVE_ALPHA, 0, 1, 1),
+                new WaveLayer(SECOND_WAVE_ALPHA, amplitude * 0.4f, 1, 1),
+                new WaveLayer(THIRD_WAVE_ALPHA, amplitude * 0.6f, 1, 1)
+        };
+    }
+
+    /**
+     * Sine from the lookup table with linear interpolation between entries.
+     */
+    public static float sin(float radians) {
+        float index = (radians % PI2) / PI2 * SINE_TABLE_SIZE;
+        if (index < 0) {
+            index += SINE_TABLE_SIZE;
+        }
+        int i = (int) index;
+        if (i >= SINE_TABLE_SIZE) {
+            return SINE_TABLE[SINE_TABLE_SIZE];
+        }
+        float fraction = index - i;
+        return SINE_TABLE[i] + (SINE_TABLE[i + 1] - SINE_TABLE[i]) * fraction;
+    }
+
+    public void setSize(float width, float height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public float getWidth() {
+        return mWidth;
+    }
+
+    public float getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @param progress fill level in percent
+     */
+    public void setProgress(float progress) {
+        mProgress = progress;
+    }
+
+    public float getProgress() {
+        return mProgress;
+    }
+
+    public void setLengthMode(int lengthMode) {
+        mLengthMode = lengthMode;
+    }
+
+    public int getLengthMode() {
+        return mLengthMode;
+    }
+
+    public void setHeightMode(int heightMode) {
+        mHeightMode = heightMode;
+        if (!mCustomLayers) {
+            mLayers = createDefaultLayers(getAmplitude());
+        }
+    }
+
+    public int getHeightMode() {
+        return mHeightMode;
+    }
+
+    /**
+     * @param step horizontal distance between sampled vertices
+     */
+    public void setStep(float step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be positive: " + step);
+        }
+        mStep = step;
+    }
+
+    public float getStep() {
+        return mStep;
+    }
+
+    /**
+     * @param speed wave movement in cycles per second
+     */
+    public void setSpeed(float speed) {
+        mSpeed = speed;
+    }
+
+    public float getSpeed() {
+        return mSpeed;
+    }
+
+    /**
+     * Moves the waves to the given clock time. The first call after
+     * {@link #resetTime()} only records the time.
+     */
+    public void setTime(long timeNanos) {
+        if (mTimeNanos != 0) {
+            float seconds = (timeNanos - mTimeNanos) / 1000000000f;
+            if (seconds > 0) {
+                mPhase = (mPhase + PI2 * mSpeed * seconds) % PI2;
+            }
+        }
+        mTimeNanos = timeNanos;
+    }
+
+    /**
+     * Forgets the clock so the time spent paused does not move the waves.
+     */
+    public void resetTime() {
+        mTimeNanos = 0;
+    }
+
+    /**
+     * Phase of the front layer, in [0, 2 * PI).
+     */
+    public float getPhase() {
+        return mPhase;
+    }
+
+    public void setPhase(float phase) {
+        mPhase = phase % PI2;
+    }
+
+    /**
+     * @param layers waves from front to back, or null for the default three
+     */
+    public void setLayers(WaveLayer[] layers) {
+        if (layers != null && layers.length == 0) {
+            throw new IllegalArgumentException("At least one layer is required");
+        }
+        mCustomLayers = layers != null;
+        mLayers = layers != null ? layers.clone() : createDefaultLayers(getAmplitude());
+    }
+
+    public int getLayerCount() {
+        return mLayers.length;
+    }
+
+    public WaveLayer getLayer(int layer) {
+        return mLayers[layer];
+    }
+
+    public boolean hasCustomLayers() {
+        return mCustomLayers;
+    }
+
+    /**
+     * Phase of a layer when the front layer is at {@code phase}.
+     */
+    public float getLayerPhase(int layer, float phase) {
+        return (phase + mLayers[layer].getPhaseOffset()) % PI2;
+    }
+
+    public float getLayerPhase(int layer) {
+        return getLayerPhase(layer, mPhase);
+    }
+
+    public float getWaveLength() {
+        switch (mLengthMode) {
+            case MODE_LARGE:
+                return mWidth * WAVE_LENGTH_MULTIPLE_LARGE;
+            case MODE_MIDDLE:
+                return mWidth * WAVE_LENGTH_MULTIPLE_MIDDLE;
+            case MODE_LITTLE:
+                return mWidth * WAVE_LENGTH_MULTIPLE_LITTLE;
+        }
+        return 0;
+    }
+
+    public float getAmplitude() {
+        switch (mHeightMode) {
+            case MODE_LARGE:
+                return WAVE_HEIGHT_LARGE;
+            case MODE_MIDDLE:
+                return WAVE_HEIGHT_MIDDLE;
+            case MODE_LITTLE:
+                return WAVE_HEIGHT_LITTLE;
+        }
+        return 0;
+    }
+
+    public float getLayerWaveLength(int layer) {
+        return getWaveLength() * mLayers[layer].getLengthScale();
+    }
+
+    public float getLayerAmplitude(int layer) {
+        return getAmplitude() * mLayers[layer].getAmplitudeScale();
+    }
+
+    /**
+     * Distance from the top to the wave crests for the given fill level.
+     */
+    public float getLevel(float progress) {
+        return mHeight / 100 * (100 - progress);
+    }
+
+    public float getLevel() {
+        return getLevel(mProgress);
+    }
+
+    /**
+     * Step for {@link #fillOutlineCurve(int, float[], int)} that keeps the
+     * curve visually identical to the sine: a fixed number of segments per
+     * wave length, but never closer than {@link #getStep()}.
+     */
+    public float getCurveStep(int layer) {
+        float waveLength = getLayerWaveLength(layer);
+        if (waveLength <= 0) {
+            return mStep;
+        }
+        return Math.max(mStep, waveLength / CURVE_SEGMENTS_PER_WAVE);
+    }
+
+    /**
+     * Number of vertices written by {@link #fillOutline(int, float[], int)}.
+     */
+    public int getOutlineVertexCount(int layer) {
+        return getOutlineVertexCount(getLayerWaveLength(layer), mStep);
+    }
+
+    private int getOutlineVertexCount(float waveLength, float step) {
+        if (waveLength <= 0) {
+            return 2;
+        }
+        return (int) ((mWidth + waveLength + step) / step) + 1;
+    }
+
+    /**
+     * Writes a layer at phase zero and level zero as x, y pairs, from x = 0
+     * to one wave length past the width. Shifting it left by
+     * {@link #getShift(int, float)} gives the wave at any phase.
+     *
+     * @return number of floats written
+     */
+    public int fillOutline(int layer, float[] out, int offset) {
+        int count = getOutlineVertexCount(layer);
+        checkCapacity(out, offset, count * 2);
+        float amplitude = getLayerAmplitude(layer);
+        float waveLength = getLayerWaveLength(layer);
+        if (waveLength <= 0) {
+            out[offset] = 0;
+            out[offset + 1] = amplitude;
+            out[offset + 2] = mWidth;
+            out[offset + 3] = amplitude;
+            return 4;
+        }
+
+        float omega = PI2 / waveLength;
+        for (int i = 0; i < count; i++) {
+            float x = i * mStep;
+            out[offset + i * 2] = x;
+            out[offset + i * 2 + 1] = amplitude * sin(omega * x) + amplitude;
+        }
+        return count * 2;
+    }
+
+    /**
+     * Number of floats written by {@link #fillOutlineCurve(int, float[], int)}.
+     */
+    public int getOutlineCurveSize(int layer) {
+        int vertices = getOutlineVertexCount(getLayerWaveLength(layer), getCurveStep(layer));
+        return 2 + (vertices - 1) * 4;
+    }
+
+    /**
+     * Same curve as {@link #fillOutline(int, float[], int)} as quadratic
+     * Bezier segments {@link #getCurveStep(int)} apart: the start point, then
+     * a control point and an end point per segment. Each segment passes
+     * through the sine at its middle, so far fewer segments are needed than
+     * straight lines.
+     *
+     * @return number of floats written
+     */
+    public int fillOutlineCurve(int layer, float[] out, int offset) {
+        int size = getOutlineCurveSize(layer);
+        checkCapacity(out, offset, size);
+        float amplitude = getLayerAmplitude(layer);
+        float waveLength = getLayerWaveLength(layer);
+        float omega = waveLength > 0 ? PI2 / waveLength : 0;
+        float step = waveLength > 0 ? getCurveStep(layer) : mWidth;
+
+        out[offset] = 0;
+        out[offset + 1] = amplitude * sin(0) + amplitude;
+        int i = offset + 2;
+        for (int segment = 0; i < offset + size; segment++) {
+            float x0 = segment * step;
+            float x1 = x0 + step;
+            float xm = x0 + step / 2;
+            float y0 = amplitude * sin(omega * x0) + amplitude;
+            float y1 = amplitude * sin(omega * x1) + amplitude;
+            float ym = amplitude * sin(omega * xm) + amplitude;
+            out[i++] = xm;
+            out[i++] = 2 * ym - (y0 + y1) / 2;
+            out[i++] = x1;
+            out[i++] = y1;
+        }
+        return size;
+    }
+
+    /**
+     * Horizontal translation that turns a layer outline into
+     * {@code sin(omega * x + phase)}. Always in (-waveLength, 0].
+     */
+    public float getShift(int layer, float phase) {
+        float waveLength = getLayerWaveLength(layer);
+        if (waveLength <= 0) {
+            return 0;
+        }
+        float shift = (phase / PI2 * waveLength) % waveLength;
+        if (shift < 0) {
+            shift += waveLength;
+        }
+        return -shift;
+    }
+
+    /**
+     * Number of vertices written by {@link #fillLayer(int, float[], int)}.
+     */
+    public int getLayerVertexCount() {
+        return getLayerVertexCount(mStep);
+    }
+
+    /**
+     * Number of vertices written by {@link #fillLayer(int, float, float[], int)}.
+     */
+    public int getLayerVertexCount(float step) {
+        return (int) (mWidth / step) + 2;
+    }
+
+    /**
+     * Writes the crest line of a layer at the current phase and progress as
+     * x, y pairs from x = 0 to the width, in view coordinates.
+     *
+     * @return number of floats written
+     */
+    public int fillLayer(int layer, float[] out, int offset) {
+        return fillLayer(layer, mStep, out, offset);
+    }
+
+    /**
+     * Like {@link #fillLayer(int, float[], int)}, sampled every {@code step}
+     * pixels instead of {@link #getStep()}.
+     */
+    public int fillLayer(int layer, float step, float[] out, int offset) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be positive: " + step);
+        }
+        int count = getLayerVertexCount(step);
+        checkCapacity(out, offset, count * 2);
+        float amplitude = getLayerAmplitude(layer);
+        float waveLength = getLayerWaveLength(layer);
+        float omega = waveLength > 0 ? PI2 / waveLength : 0;
+        float phase = getLayerPhase(layer);
+        float base = getLevel() + amplitude;
+        for (int i = 0; i < count; i++) {
+            float x = Math.min(i * step, mWidth);
+            out[offset + i * 2] = x;
+            out[offset + i * 2 + 1] = base + amplitude * sin(omega * x + phase);
+        }
+        return count * 2;
+    }
+
+    private static void checkCapacity(float[] out, int offset, int size) {
+        if (offset < 0 || out.length - offset < size) {
+            throw new IllegalArgumentException("Buffer too small: need " + size
+                    + " floats at offset " + offset + ", have " + out.length);
+        }
+    }
+}
@@ -0,0 +1,574 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.animation.TimeInterpolator;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The wave gauge as a {@link Drawable}, for image views, backgrounds,
+ * progress bars and bitmaps without a view of its own. The level maps to
+ * progress: 0..10000 is 0..100 percent. Between {@link #start()} and
+ * {@link #stop()} it invalidates itself from the shared {@link WaveTicker}
+ * while it is visible and has a callback. Sizes are in pixels; shape and
+ * mode constants are the ones of {@link WaveProgressView}.
+ */
+
+public class WaveProgressDrawable extends Drawable implements Animatable {
+
+    private final static int DEFAULT_FRAME_RATE = 60;
+    private final static int MAX_LEVEL = 10000;
+
+    private final WaveRenderer mRenderer = new WaveRenderer();
+    private final FramePacer mPacer = new FramePacer();
+    private final Rect mContentPadding = new Rect();
+    private final Rect mDirtyBounds = new Rect();
+    private boolean mWaveBandInvalidation;
+
+    private final WaveTicker.Listener mFrameListener = new WaveTicker.Listener() {
+        @Override
+        public void onFrame(long frameTimeNanos) {
+            onTick(frameTimeNanos);
+        }
+    };
+
+    private boolean mRunning;
+    private boolean mTicking;
+    private boolean mSelfTicking = true;
+    private int mTargetFrameRate = DEFAULT_FRAME_RATE;
+
+    private int mAlpha = 255;
+    private ColorFilter mColorFilter;
+    private Paint mLayerPaint = new Paint();
+    private RectF mLayerBounds = new RectF();
+
+    public float getAllCornerRadius() {
+        return mRenderer.getAllCornerRadius();
+    }
+
+    public void setAllCornerRadius(float allCornerRadius) {
+        mRenderer.setAllCornerRadius(allCornerRadius);
+        invalidateSelf();
+    }
+
+    public int getBorderColor() {
+        return mRenderer.getBorderColor();
+    }
+
+    public void setBorderColor(int borderColor) {
+        mRenderer.setBorderColor(borderColor);
+        invalidateSelf();
+    }
+
+    public float getBorderWidth() {
+        return mRenderer.getBorderWidth();
+    }
+
+    public void setBorderWidth(float borderWidth) {
+        mRenderer.setBorderWidth(borderWidth);
+        invalidateSelf();
+    }
+
+    public float getBottomLeftCornerRadius() {
+        return mRenderer.getBottomLeftCornerRadius();
+    }
+
+    public void setBottomLeftCornerRadius(float bottomLeftCornerRadius) {
+        mRenderer.setBottomLeftCornerRadius(bottomLeftCornerRadius);
+        invalidateSelf();
+    }
+
+    public float getBottomRightCornerRadius() {
+        return mRenderer.getBottomRightCornerRadius();
+    }
+
+    public void setBottomRightCornerRadius(float bottomRightCornerRadius) {
+        mRenderer.setBottomRightCornerRadius(bottomRightCornerRadius);
+        invalidateSelf();
+    }
+
+    public float getTopLeftCornerRadius() {
+        return mRenderer.getTopLeftCornerRadius();
+    }
+
+    public void setTopLeftCornerRadius(float topLeftCornerRadius) {
+        mRenderer.setTopLeftCornerRadius(topLeftCornerRadius);
+        invalidateSelf();
+    }
+
+    public float getTopRightCornerRadius() {
+        return mRenderer.getTopRightCornerRadius();
+    }
+
+    public void setTopRightCornerRadius(float topRightCornerRadius) {
+        mRenderer.setTopRightCornerRadius(topRightCornerRadius);
+        invalidateSelf();
+    }
+
+    public int getFirstWaveColor() {
+        return mRenderer.getFirstWaveColor();
+    }
+
+    public void setFirstWaveColor(int firstWaveColor) {
+        mRenderer.setFirstWaveColor(firstWaveColor);
+        invalidateSelf();
+    }
+
+    public int getWaveHeightMode() {
+        return mRenderer.getWaveHeightMode();
+    }
+
+    public void setWaveHeightMode(int waveHeightMode) {
+        mRenderer.setWaveHeightMode(waveHeightMode);
+        invalidateSelf();
+    }
+
+    public int getWaveMultipleMode() {
+        return mRenderer.getWaveMultipleMode();
+    }
+
+    public void setWaveMultipleMode(int waveMultipleMode) {
+        mRenderer.setWaveMultipleMode(waveMultipleMode);
+        invalidateSelf();
+    }
+
+    public int getViewType() {
+        return mRenderer.getViewType();
+    }
+
+    public void setViewType(int viewType) {
+        mRenderer.setViewType(viewType);
+        invalidateSelf();
+    }
+
+    public float getProgress() {
+        return mRenderer.getProgress();
+    }
+
+    public void setProgress(float progress) {
+        setProgress(progress, false);
+    }
+
+    /**
+     * Sets the fill level. With {@code animate} the level moves to the new
+     * value over {@link #getProgressAnimationDuration()} milliseconds, even
+     * while the waves are stopped.
+     */
+    public void setProgress(float progress, boolean animate) {
+        mRenderer.setProgress(progress, animate);
+        if (mRenderer.isProgressAnimating()) {
+            startTicking();
+        }
+        invalidateSelf();
+    }
+
+    public long getProgressAnimationDuration() {
+        return mRenderer.getProgressAnimationDuration();
+    }
+
+    public void setProgressAnimationDuration(long duration) {
+        mRenderer.setProgressAnimationDuration(duration);
+    }
+
+    public TimeInterpolator getProgressInterpolator() {
+        return mRenderer.getProgressInterpolator();
+    }
+
+    public void setProgressInterpolator(TimeInterpolator interpolator) {
+        mRenderer.setProgressInterpolator(interpolator);
+    }
+
+    public float getWaveSpeed() {
+        return mRenderer.getWaveSpeed();
+    }
+
+    /**
+     * @param waveSpeed wave movement in cycles per second
+     */
+    public void setWaveSpeed(float waveSpeed) {
+        mRenderer.setWaveSpeed(waveSpeed);
+    }
+
+    public float getDurationScale() {
+        return mRenderer.getDurationScale();
+    }
+
+    /**
+     * Stretches the wave cycle and the progress animation; 0 keeps the waves
+     * still. {@link WaveProgressView} passes the system animator duration
+     * scale, a standalone drawable uses 1 unless told otherwise.
+     */
+    public void setDurationScale(float durationScale) {
+        mRenderer.setDurationScale(durationScale);
+        invalidateSelf();
+    }
+
+    public int getRenderMode() {
+        return mRenderer.getRenderMode();
+    }
+
+    /**
+     * @see WaveProgressView#setRenderMode(int)
+     */
+    public void setRenderMode(int renderMode) {
+        mRenderer.setRenderMode(renderMode);
+        invalidateSelf();
+    }
+
+    public boolean isCachedLoopEnabled() {
+        return mRenderer.isCachedLoopEnabled();
+    }
+
+    /**
+     * @see WaveProgressView#setCachedLoopEnabled(boolean)
+     */
+    public void setCachedLoopEnabled(boolean cachedLoop) {
+        mRenderer.setCachedLoopEnabled(cachedLoop);
+        invalidateSelf();
+    }
+
+    public int getCachedLoopFrameCount() {
+        return mRenderer.getCachedLoopFrameCount();
+    }
+
+    public void setCachedLoopFrameCount(int frameCount) {
+        mRenderer.setCachedLoopFrameCount(frameCount);
+        invalidateSelf();
+    }
+
+    public WaveFrameCache getWaveFrameCache() {
+        return mRenderer.getWaveFrameCache();
+    }
+
+    public void setWaveFrameCache(WaveFrameCache frameCache) {
+        mRenderer.setWaveFrameCache(frameCache);
+        invalidateSelf();
+    }
+
+    public WaveBitmapPool getWaveBitmapPool() {
+        return mRenderer.getWaveBitmapPool();
+    }
+
+    public void setWaveBitmapPool(WaveBitmapPool waveBitmapPool) {
+        mRenderer.setWaveBitmapPool(waveBitmapPool);
+        invalidateSelf();
+    }
+
+    public List<WaveLayer> getWaveLayers() {
+        return Arrays.asList(mRenderer.getWaveLayers());
+    }
+
+    /**
+     * @see WaveProgressView#setWaveLayers(List)
+     */
+    public void setWaveLayers(List<WaveLayer> layers) {
+        mRenderer.setWaveLayers(layers == null ? null : layers.toArray(new WaveLayer[layers.size()]));
+        invalidateSelf();
+    }
+
+    public boolean isAdaptiveQualityEnabled() {
+        return mRenderer.isAdaptiveQualityEnabled();
+    }
+
+    /**
+     * @see WaveProgressView#setAdaptiveQualityEnabled(boolean)
+     */
+    public void setAdaptiveQualityEnabled(boolean adaptiveQuality) {
+        mRenderer.setAdaptiveQualityEnabled(adaptiveQuality);
+        invalidateSelf();
+    }
+
+    public long getAdaptiveQualityBudgetNanos() {
+        return mRenderer.getAdaptiveQualityBudgetNanos();
+    }
+
+    public void setAdaptiveQualityBudgetNanos(long budgetNanos) {
+        mRenderer.setAdaptiveQualityBudgetNanos(budgetNanos);
+    }
+
+    public WaveFrameMetrics getFrameMetrics() {
+        return mRenderer.getFrameMetrics();
+    }
+
+    public void setFrameMetrics(WaveFrameMetrics metrics) {
+        mRenderer.setFrameMetrics(metrics);
+    }
+
+    public int getTargetFrameRate() {
+        return mTargetFrameRate;
+    }
+
+    public void setTargetFrameRate(int targetFrameRate) {
+        if (targetFrameRate <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + targetFrameRate);
+        }
+        this.mTargetFrameRate = targetFrameRate;
+    }
+
+    /**
+     * Starts moving the waves. Frames are only produced while the drawable
+     * is visible and attached to a callback.
+     */
+    @Override
+    public void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        startTicking();
+    }
+
+    /**
+     * Stops the waves. The current frame stays as it is.
+     */
+    @Override
+    public void stop() {
+        mRunning = false;
+        if (!mRenderer.isProgressAnimating()) {
+            stopTicking();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Frees the wave and background buffers. They are rebuilt on the next draw.
+     */
+    public void release() {
+        mRenderer.release();
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.isEmpty()) {
+            return;
+        }
+        updateRendererBounds();
+
+        int count;
+        if (mAlpha < 255 || mColorFilter != null) {
+            mLayerBounds.set(bounds);
+            count = canvas.saveLayer(mLayerBounds, mLayerPaint, Canvas.ALL_SAVE_FLAG);
+        } else {
+            count = canvas.save();
+        }
+        canvas.translate(bounds.left, bounds.top);
+        mRenderer.draw(canvas);
+        canvas.restoreToCount(count);
+
+        if ((mRunning || mRenderer.isProgressAnimating()) && !mTicking) {
+            // Came back after the callback went away or the drawable was hidden
+            startTicking();
+        }
+    }
+
+    /**
+     * The wave band while a tick invalidates, the whole bounds otherwise.
+     */
+    @Override
+    public Rect getDirtyBounds() {
+        return mWaveBandInvalidation ? mDirtyBounds : super.getDirtyBounds();
+    }
+
+    @Override
+    protected boolean onLevelChange(int level) {
+        mRenderer.setProgress(level * 100f / MAX_LEVEL, false);
+        invalidateSelf();
+        return true;
+    }
+
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        boolean changed = super.setVisible(visible, restart);
+        if (!visible) {
+            stopTicking();
+        } else if (changed && mRunning) {
+            startTicking();
+        }
+        return changed;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (mAlpha != alpha) {
+            mAlpha = alpha;
+            mLayerPaint.setAlpha(alpha);
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return mAlpha;
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        mColorFilter = colorFilter;
+        mLayerPaint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    /**
+     * Reads the {@code wpv_*} attributes of a wave widget.
+     */
+    void readAttributes(TypedArray a) {
+        mRenderer.readAttributes(a);
+    }
+
+    void setBackgroundDrawable(Drawable backgroundDrawable) {
+        mRenderer.setBackgroundDrawable(backgroundDrawable);
+    }
+
+    /**
+     * Insets the gauge inside the bounds, used for the padding of a view.
+     */
+    void setContentPadding(int left, int top, int right, int bottom) {
+        mContentPadding.set(left, top, right, bottom);
+    }
+
+    /**
+     * Moves the waves and the progress animation to the given frame time.
+     */
+    void advance(long frameTimeNanos, boolean moveWaves) {
+        mRenderer.advance(frameTimeNanos, moveWaves);
+    }
+
+    void resetFrameTime() {
+        mRenderer.resetFrameTime();
+    }
+
+    boolean isProgressAnimating() {
+        return mRenderer.isProgressAnimating();
+    }
+
+    void finishProgressAnimation() {
+        mRenderer.finishProgressAnimation();
+    }
+
+    /**
+     * Brings layout, static layer and wave geometry up to date for the next
+     * frame. Allocates nothing unless the bounds or an attribute changed.
+     */
+    void prepareFrame() {
+        updateRendererBounds();
+        mRenderer.prepareFrame();
+    }
+
+    Bitmap getWaveBitmap() {
+        return mRenderer.getWaveBitmap();
+    }
+
+    /**
+     * Invalidates only the band the waves move in, for a frame where just
+     * the phase or progress changed. Hardware-accelerated views redraw
+     * whole since Lollipop, so the gain there is the skipped empty frames.
+     *
+     * @return false if nothing moves and nothing was invalidated
+     */
+    boolean invalidateWaveBand() {
+        updateRendererBounds();
+        if (!mRenderer.getWaveBand(mDirtyBounds)) {
+            return false;
+        }
+        Rect bounds = getBounds();
+        mDirtyBounds.offset(bounds.left, bounds.top);
+        mWaveBandInvalidation = true;
+        try {
+            invalidateSelf();
+        } finally {
+            mWaveBandInvalidation = false;
+        }
+        return true;
+    }
+
+    /**
+     * True if moving the waves changes anything at the current progress.
+     * At 0 percent the crests are below the shape and nothing moves.
+     */
+    boolean hasWaveBand() {
+        updateRendererBounds();
+        return mRenderer.hasWaveBand();
+    }
+
+    void setGeometryCache(WaveGeometryCache geometryCache) {
+        mRenderer.setGeometryCache(geometryCache);
+    }
+
+    void collectGeometries(Collection<WaveGeometry> out) {
+        mRenderer.collectGeometries(out);
+    }
+
+    /**
+     * Hands the frame clock to the owner, which calls {@link #advance} and
+     * invalidates on its own schedule.
+     */
+    void setSelfTicking(boolean selfTicking) {
+        this.mSelfTicking = selfTicking;
+        if (!selfTicking) {
+            stopTicking();
+        }
+    }
+
+    private void updateRendererBounds() {
+        Rect bounds = getBounds();
+        mRenderer.setBounds(bounds.width(), bounds.height(), mContentPadding.left,
+                mContentPadding.top, mContentPadding.right, mContentPadding.bottom);
+    }
+
+    private void startTicking() {
+        if (mTicking || !mSelfTicking) {
+            return;
+        }
+        mTicking = true;
+        mPacer.reset();
+        mRenderer.resetFrameTime();
+        WaveTicker.getInstance().add(mFrameListener);
+    }
+
+    private void stopTicking() {
+        if (!mTicking) {
+            return;
+        }
+        mTicking = false;
+        WaveTicker.getInstance().remove(mFrameListener);
+    }
+
+    private void onTick(long frameTimeNanos) {
+        boolean progressAnimating = mRenderer.isProgressAnimating();
+        if (!mRunning && !progressAnimating || getCallback() == null || !isVisible()) {
+            // Nothing to animate or nobody to show it; draw() resumes
+            stopTicking();
+            return;
+        }
+        if (!progressAnimating && !hasWaveBand()) {
+            // No wave in sight; the next draw after a change resumes
+            stopTicking();
+            return;
+        }
+        if (mPacer.shouldDraw(frameTimeNanos, mTargetFrameRate)) {
+            mRenderer.advance(frameTimeNanos, mRunning);
+            invalidateWaveBand();
+        }
+    }
+}
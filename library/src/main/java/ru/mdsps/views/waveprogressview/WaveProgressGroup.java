@@ -0,0 +1,837 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A grid of wave gauges in one view: one measure, one layout and one draw
+ * pass for the whole grid instead of a {@link WaveProgressView} per gauge.
+ * Gauges are described by {@link Gauge} specs and laid out row by row,
+ * {@link #getColumnCount()} per row. Gauges of the same size and wave modes
+ * share their wave outlines, all gauges move on one frame clock, and a
+ * progress change only invalidates the cell it belongs to. Cells that are
+ * scrolled out of sight, empty or idle are not ticked. Sizes are in dp
+ * like the view setters.
+ */
+
+public class WaveProgressGroup extends View {
+
+    private final static int DEFAULT_FRAME_RATE = 60;
+    private final static int DEFAULT_COLUMN_COUNT = 4;
+    private final static float DEFAULT_CELL_SPACING = 8;
+
+    private WaveProgressDrawable[] mCells = new WaveProgressDrawable[0];
+    private Gauge[] mGauges = new Gauge[0];
+    // Gauge ids in ascending order and the position of each
+    private long[] mSortedIds = new long[0];
+    private int[] mSortedPositions = new int[0];
+
+    private final WaveGeometryCache mGeometryCache = new WaveGeometryCache();
+    // Outlines the cells still use, collected when restyled specs are drawn
+    private final Set<WaveGeometry> mUsedGeometries = new HashSet<>();
+    private boolean mGeometryPrunePending;
+    private final Rect mClipBounds = new Rect();
+    // Part of the group on screen, in its own coordinates
+    private final Rect mVisibleBounds = new Rect();
+    // Last progress change per cell, for the idle timeout
+    private long[] mLastProgressChangeNanos = new long[0];
+    private long mIdleTimeout;
+
+    private int mColumnCount = DEFAULT_COLUMN_COUNT;
+    private int mCellSpacing;
+    private int mCellHeight;
+    private int mRenderMode = WaveProgressView.RENDER_MODE_BITMAP;
+    private float mDurationScale = 1;
+
+    private FrameLoop mFrameLoop = new FrameLoop();
+    private int mTargetFrameRate = DEFAULT_FRAME_RATE;
+    private boolean mAnimationEnabled = true;
+    private boolean mAttached;
+
+    private final ViewTreeObserver.OnScrollChangedListener mScrollListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    updateVisibleBounds();
+                }
+            };
+
+    public WaveProgressGroup(Context context) {
+        this(context, null);
+    }
+
+    public WaveProgressGroup(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public WaveProgressGroup(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context, attrs, defStyleAttr);
+    }
+
+    private void init(Context context, AttributeSet attrs, int defStyleAttr) {
+        mCellSpacing = (int) dp2px(DEFAULT_CELL_SPACING);
+        TypedArray a = context.obtainStyledAttributes(attrs,
+                R.styleable.WaveProgressGroup, defStyleAttr, 0);
+        if (a != null) {
+            mColumnCount = Math.max(1, a.getInt(R.styleable.WaveProgressGroup_wpv_column_count,
+                    DEFAULT_COLUMN_COUNT));
+            mCellSpacing = a.getDimensionPixelSize(R.styleable.WaveProgressGroup_wpv_cell_spacing,
+                    mCellSpacing);
+            mCellHeight = a.getDimensionPixelSize(R.styleable.WaveProgressGroup_wpv_cell_height, 0);
+            mRenderMode = a.getInt(R.styleable.WaveProgressGroup_wpv_render_mode,
+                    WaveProgressView.RENDER_MODE_BITMAP);
+            a.recycle();
+        }
+    }
+
+    /**
+     * Replaces the gauges. Cells are reused by position, and attributes that
+     * did not change keep their cached layers, so calling this again with
+     * restyled specs is cheap. Ids must be unique.
+     */
+    public void setGauges(List<Gauge> gauges) {
+        int count = gauges.size();
+        long[] sortedIds = new long[count];
+        int[] sortedPositions = new int[count];
+        Gauge[] specs = new Gauge[count];
+        for (int i = 0; i < count; i++) {
+            specs[i] = gauges.get(i).copy();
+            sortedIds[i] = specs[i].mId;
+        }
+        Arrays.sort(sortedIds);
+        for (int i = 1; i < count; i++) {
+            if (sortedIds[i] == sortedIds[i - 1]) {
+                throw new IllegalArgumentException("Duplicate gauge id: " + sortedIds[i]);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            sortedPositions[Arrays.binarySearch(sortedIds, specs[i].mId)] = i;
+        }
+
+        WaveProgressDrawable[] cells = Arrays.copyOf(mCells, count);
+        for (int i = 0; i < count; i++) {
+            if (cells[i] == null) {
+                cells[i] = createCell();
+            }
+            applyGauge(cells[i], specs[i], i < mGauges.length ? mGauges[i] : null);
+        }
+        for (int i = count; i < mCells.length; i++) {
+            mCells[i].setCallback(null);
+            mCells[i].release();
+        }
+
+        // Outlines of the old specs are dropped once the new ones are drawn
+        mGeometryPrunePending = true;
+        boolean relayout = count != mCells.length;
+        mCells = cells;
+        mLastProgressChangeNanos = new long[count];
+        Arrays.fill(mLastProgressChangeNanos, System.nanoTime());
+        mGauges = specs;
+        mSortedIds = sortedIds;
+        mSortedPositions = sortedPositions;
+        if (relayout) {
+            requestLayout();
+        }
+        updateCellBounds();
+        invalidate();
+        updateAnimationState();
+    }
+
+    public int getGaugeCount() {
+        return mCells.length;
+    }
+
+    /**
+     * @return the spec of the gauge at the position, with its current progress
+     */
+    public Gauge getGauge(int position) {
+        Gauge gauge = mGauges[position].copy();
+        gauge.mProgress = mCells[position].getProgress();
+        return gauge;
+    }
+
+    /**
+     * @return the position of the gauge with the id, or -1 if there is none
+     */
+    public int indexOfGauge(long id) {
+        int index = Arrays.binarySearch(mSortedIds, id);
+        return index >= 0 ? mSortedPositions[index] : -1;
+    }
+
+    public float getGaugeProgress(int position) {
+        return mCells[position].getProgress();
+    }
+
+    public void setGaugeProgress(int position, float progress) {
+        setGaugeProgress(position, progress, false);
+    }
+
+    /**
+     * Sets the fill level of one gauge. Only its cell is redrawn.
+     */
+    public void setGaugeProgress(int position, float progress, boolean animate) {
+        WaveProgressDrawable cell = mCells[position];
+        if (progress == cell.getProgress() && !animate) {
+            return;
+        }
+        cell.setProgress(progress, animate);
+        mLastProgressChangeNanos[position] = System.nanoTime();
+        if (!mFrameLoop.isRunning()) {
+            updateAnimationState();
+        }
+    }
+
+    public void setGaugeProgressById(long id, float progress) {
+        setGaugeProgressById(id, progress, false);
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no gauge with the id
+     */
+    public void setGaugeProgressById(long id, float progress, boolean animate) {
+        int position = indexOfGauge(id);
+        if (position < 0) {
+            throw new IllegalArgumentException("Unknown gauge id: " + id);
+        }
+        setGaugeProgress(position, progress, animate);
+    }
+
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    public void setColumnCount(int columnCount) {
+        if (columnCount <= 0) {
+            throw new IllegalArgumentException("Column count must be positive: " + columnCount);
+        }
+        if (columnCount != mColumnCount) {
+            this.mColumnCount = columnCount;
+            requestLayout();
+        }
+    }
+
+    public float getCellSpacing() {
+        return px2dp(mCellSpacing);
+    }
+
+    /**
+     * @param cellSpacing gap between rows and columns in dp
+     */
+    public void setCellSpacing(float cellSpacing) {
+        int spacing = (int) dp2px(cellSpacing);
+        if (spacing != mCellSpacing) {
+            this.mCellSpacing = spacing;
+            requestLayout();
+        }
+    }
+
+    public float getCellHeight() {
+        return px2dp(mCellHeight);
+    }
+
+    /**
+     * @param cellHeight row height in dp, 0 for square cells
+     */
+    public void setCellHeight(float cellHeight) {
+        int height = cellHeight > 0 ? (int) dp2px(cellHeight) : 0;
+        if (height != mCellHeight) {
+            this.mCellHeight = height;
+            requestLayout();
+        }
+    }
+
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * @see WaveProgressView#setRenderMode(int)
+     */
+    public void setRenderMode(int renderMode) {
+        if (renderMode != WaveProgressView.RENDER_MODE_BITMAP
+                && renderMode != WaveProgressView.RENDER_MODE_DIRECT
+                && renderMode != WaveProgressView.RENDER_MODE_BATCHED) {
+            throw new IllegalArgumentException("Unknown render mode: " + renderMode);
+        }
+        for (WaveProgressDrawable cell : mCells) {
+            cell.setRenderMode(renderMode);
+        }
+        this.mRenderMode = renderMode;
+    }
+
+    public int getTargetFrameRate() {
+        return mTargetFrameRate;
+    }
+
+    public void setTargetFrameRate(int targetFrameRate) {
+        if (targetFrameRate <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + targetFrameRate);
+        }
+        this.mTargetFrameRate = targetFrameRate;
+    }
+
+    /**
+     * Starts the wave animation of all gauges.
+     */
+    public void start() {
+        mAnimationEnabled = true;
+        Arrays.fill(mLastProgressChangeNanos, System.nanoTime());
+        updateAnimationState();
+    }
+
+    public long getIdleTimeout() {
+        return mIdleTimeout;
+    }
+
+    /**
+     * Stops the waves of a gauge once its progress has not changed for
+     * {@code idleTimeout} milliseconds, like
+     * {@link WaveProgressView#setIdleTimeout(long)} with an idle frame rate
+     * of 0. Its next progress change moves them again.
+     *
+     * @param idleTimeout quiet period in milliseconds, 0 to never idle
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("Idle timeout must not be negative: " + idleTimeout);
+        }
+        this.mIdleTimeout = idleTimeout;
+        Arrays.fill(mLastProgressChangeNanos, System.nanoTime());
+        updateAnimationState();
+    }
+
+    /**
+     * Stops the wave animation. The current frame stays on screen.
+     */
+    public void stop() {
+        mAnimationEnabled = false;
+        updateAnimationState();
+    }
+
+    public boolean isAnimating() {
+        return mFrameLoop.isRunning();
+    }
+
+    /**
+     * Number of distinct wave outlines the gauges share.
+     */
+    int getSharedGeometryCount() {
+        return mGeometryCache.size();
+    }
+
+    private WaveProgressDrawable createCell() {
+        WaveProgressDrawable cell = new WaveProgressDrawable();
+        // The group paces the frames for all cells
+        cell.setSelfTicking(false);
+        cell.setGeometryCache(mGeometryCache);
+        cell.setDurationScale(mDurationScale);
+        cell.setRenderMode(mRenderMode);
+        cell.setCallback(this);
+        return cell;
+    }
+
+    private void applyGauge(WaveProgressDrawable cell, Gauge gauge, Gauge previous) {
+        cell.setViewType(gauge.mViewType);
+        cell.setBorderWidth(dp2px(gauge.mBorderWidth));
+        cell.setBorderColor(gauge.mBorderColor);
+        cell.setTopLeftCornerRadius(dp2px(gauge.mTopLeftCornerRadius));
+        cell.setTopRightCornerRadius(dp2px(gauge.mTopRightCornerRadius));
+        cell.setBottomLeftCornerRadius(dp2px(gauge.mBottomLeftCornerRadius));
+        cell.setBottomRightCornerRadius(dp2px(gauge.mBottomRightCornerRadius));
+        cell.setFirstWaveColor(gauge.mFirstWaveColor);
+        cell.setWaveHeightMode(gauge.mWaveHeightMode);
+        cell.setWaveMultipleMode(gauge.mWaveMultipleMode);
+        // Layers rebuild paints and outlines, so only when they differ
+        WaveLayer[] previousLayers = previous != null ? previous.mWaveLayers : null;
+        if (!Arrays.equals(gauge.mWaveLayers, previousLayers)) {
+            cell.setWaveLayers(gauge.mWaveLayers == null ? null : Arrays.asList(gauge.mWaveLayers));
+        }
+        if (gauge.mProgress != cell.getProgress()) {
+            cell.setProgress(gauge.mProgress);
+        }
+    }
+
+    private int getRowCount() {
+        return (mCells.length + mColumnCount - 1) / mColumnCount;
+    }
+
+    private int getCellWidth(int width) {
+        int content = width - getPaddingLeft() - getPaddingRight() - mCellSpacing * (mColumnCount - 1);
+        return Math.max(0, content / mColumnCount);
+    }
+
+    /**
+     * Places every cell in the grid. Square and circle gauges are centered
+     * in their cell with the smaller side, like a measured view.
+     */
+    private void updateCellBounds() {
+        int cellWidth = getCellWidth(getWidth());
+        int cellHeight = mCellHeight > 0 ? mCellHeight : cellWidth;
+        for (int i = 0; i < mCells.length; i++) {
+            int left = getPaddingLeft() + i % mColumnCount * (cellWidth + mCellSpacing);
+            int top = getPaddingTop() + i / mColumnCount * (cellHeight + mCellSpacing);
+            int width = cellWidth;
+            int height = cellHeight;
+            int viewType = mGauges[i].mViewType;
+            if (viewType == WaveProgressView.VIEW_TYPE_SQUARE
+                    || viewType == WaveProgressView.VIEW_TYPE_CIRCLE) {
+                int size = Math.min(width, height);
+                left += (width - size) / 2;
+                top += (height - size) / 2;
+                width = size;
+                height = size;
+            }
+            mCells[i].setBounds(left, top, left + width, top + height);
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+        int rows = getRowCount();
+        int cellHeight = mCellHeight > 0 ? mCellHeight : getCellWidth(width);
+        int height = getPaddingTop() + getPaddingBottom()
+                + rows * cellHeight + Math.max(0, rows - 1) * mCellSpacing;
+        setMeasuredDimension(width, resolveSize(Math.max(height, getSuggestedMinimumHeight()),
+                heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // Outlines of the old cell sizes are not used any more
+        mGeometryCache.clear();
+        mGeometryPrunePending = false;
+        updateCellBounds();
+        updateAnimationState();
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        updateCellBounds();
+        updateVisibleBounds();
+    }
+
+    private void updateVisibleBounds() {
+        if (!getLocalVisibleRect(mVisibleBounds)) {
+            mVisibleBounds.setEmpty();
+        }
+        if (!mFrameLoop.isRunning()) {
+            // Cells scrolled into sight may move again
+            updateAnimationState();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        if (!mFrameLoop.isRunning()) {
+            updateAnimationState();
+        }
+
+        // Software canvases are clipped to the invalidated cells
+        if (canvas.getClipBounds(mClipBounds)) {
+            for (WaveProgressDrawable cell : mCells) {
+                if (Rect.intersects(mClipBounds, cell.getBounds())) {
+                    cell.draw(canvas);
+                }
+            }
+        }
+        if (mGeometryPrunePending) {
+            pruneGeometries();
+        }
+    }
+
+    /**
+     * Drops the shared outlines no cell refers to any more. Cells that were
+     * clipped out keep theirs until the next prune.
+     */
+    private void pruneGeometries() {
+        mGeometryPrunePending = false;
+        for (WaveProgressDrawable cell : mCells) {
+            cell.collectGeometries(mUsedGeometries);
+        }
+        mGeometryCache.retainAll(mUsedGeometries);
+        mUsedGeometries.clear();
+    }
+
+    /**
+     * Invalidates the dirty area of a cell only, without the lookup
+     * {@link View#verifyDrawable} would do for every cell.
+     */
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        if (who instanceof WaveProgressDrawable) {
+            Rect dirty = who.getDirtyBounds();
+            invalidate(dirty.left + getScrollX(), dirty.top + getScrollY(),
+                    dirty.right + getScrollX(), dirty.bottom + getScrollY());
+            return;
+        }
+        super.invalidateDrawable(who);
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        if (who instanceof WaveProgressDrawable) {
+            for (WaveProgressDrawable cell : mCells) {
+                if (cell == who) {
+                    return true;
+                }
+            }
+        }
+        return super.verifyDrawable(who);
+    }
+
+    /**
+     * Subscription to the shared {@link WaveTicker}. Moves all gauges on one
+     * clock and invalidates the wave band of each cell that moved.
+     */
+    private class FrameLoop implements WaveTicker.Listener {
+
+        private final FramePacer mPacer = new FramePacer();
+        private boolean mRunning;
+
+        void start() {
+            if (mRunning) {
+                return;
+            }
+            mRunning = true;
+            mPacer.reset();
+            for (WaveProgressDrawable cell : mCells) {
+                cell.resetFrameTime();
+            }
+            WaveTicker.getInstance().add(this);
+        }
+
+        void stop() {
+            if (!mRunning) {
+                return;
+            }
+            mRunning = false;
+            WaveTicker.getInstance().remove(this);
+        }
+
+        boolean isRunning() {
+            return mRunning;
+        }
+
+        @Override
+        public void onFrame(long frameTimeNanos) {
+            if (!mRunning) {
+                return;
+            }
+            if (!canAnimate()) {
+                stop();
+                return;
+            }
+            if (!mPacer.shouldDraw(frameTimeNanos, mTargetFrameRate)) {
+                return;
+            }
+            for (int i = 0; i < mCells.length; i++) {
+                WaveProgressDrawable cell = mCells[i];
+                if (!isCellVisible(cell)) {
+                    if (cell.isProgressAnimating()) {
+                        cell.finishProgressAnimation();
+                    }
+                    // Resumes from the same phase when it comes into sight
+                    cell.resetFrameTime();
+                    continue;
+                }
+                boolean progressAnimating = cell.isProgressAnimating();
+                boolean moveWaves = canMoveWaves(i, frameTimeNanos);
+                if (!progressAnimating && !moveWaves) {
+                    cell.resetFrameTime();
+                    continue;
+                }
+                cell.advance(frameTimeNanos, moveWaves);
+                cell.invalidateWaveBand();
+            }
+        }
+    }
+
+    private boolean canAnimate() {
+        return mAttached && getWindowVisibility() == View.VISIBLE && isShown()
+                && getWidth() > 0 && getHeight() > 0 && hasMovingCell();
+    }
+
+    private boolean hasMovingCell() {
+        long timeNanos = System.nanoTime();
+        for (int i = 0; i < mCells.length; i++) {
+            WaveProgressDrawable cell = mCells[i];
+            if (isCellVisible(cell)
+                    && (cell.isProgressAnimating() || canMoveWaves(i, timeNanos))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isCellVisible(WaveProgressDrawable cell) {
+        return Rect.intersects(mVisibleBounds, cell.getBounds());
+    }
+
+    private boolean canMoveWaves(int position, long timeNanos) {
+        // Empty gauges have no waves in sight, idle ones wait for progress
+        return mAnimationEnabled && mDurationScale > 0 && mCells[position].hasWaveBand()
+                && (mIdleTimeout <= 0
+                || timeNanos - mLastProgressChangeNanos[position] < mIdleTimeout * 1000000L);
+    }
+
+    private void updateAnimationState() {
+        if (mFrameLoop == null) {
+            // Called from the View constructor before fields are initialized
+            return;
+        }
+        if (canAnimate()) {
+            mFrameLoop.start();
+        } else {
+            mFrameLoop.stop();
+            for (WaveProgressDrawable cell : mCells) {
+                if (cell.isProgressAnimating()) {
+                    cell.finishProgressAnimation();
+                    cell.invalidateSelf();
+                }
+            }
+        }
+    }
+
+    private void updateDurationScale() {
+        float durationScale = WaveProgressView.getSystemDurationScale(getContext());
+        if (durationScale != mDurationScale) {
+            mDurationScale = durationScale;
+            for (WaveProgressDrawable cell : mCells) {
+                cell.setDurationScale(durationScale);
+            }
+        }
+    }
+
+    private int px2dp(float px) {
+        return WaveProgressView.px2dp(getResources(), px);
+    }
+
+    private float dp2px(float dp) {
+        return WaveProgressView.dp2px(getResources(), dp);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        Arrays.fill(mLastProgressChangeNanos, System.nanoTime());
+        getViewTreeObserver().addOnScrollChangedListener(mScrollListener);
+        updateDurationScale();
+        updateVisibleBounds();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mAttached = false;
+        getViewTreeObserver().removeOnScrollChangedListener(mScrollListener);
+        updateAnimationState();
+        for (WaveProgressDrawable cell : mCells) {
+            cell.release();
+        }
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAnimationState();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateAnimationState();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        if (hasWindowFocus) {
+            updateDurationScale();
+        }
+        updateAnimationState();
+    }
+
+    /**
+     * Look and fill level of one gauge in a {@link WaveProgressGroup}. Sizes
+     * are in dp, shape and mode constants are the ones of
+     * {@link WaveProgressView}. The group copies specs, so changing one
+     * afterwards has no effect until it is passed in again.
+     */
+    public static final class Gauge {
+
+        private final long mId;
+        private int mViewType = WaveProgressView.VIEW_TYPE_RECTANGLE;
+        private float mTopLeftCornerRadius;
+        private float mTopRightCornerRadius;
+        private float mBottomLeftCornerRadius;
+        private float mBottomRightCornerRadius;
+        private float mBorderWidth;
+        private int mBorderColor = Color.BLACK;
+        private int mFirstWaveColor = Color.BLUE;
+        private int mWaveHeightMode = WaveModel.MODE_LARGE;
+        private int mWaveMultipleMode = WaveModel.MODE_LARGE;
+        private float mProgress = 50f;
+        private WaveLayer[] mWaveLayers;
+
+        /**
+         * @param id key for {@link WaveProgressGroup#setGaugeProgressById}
+         */
+        public Gauge(long id) {
+            mId = id;
+        }
+
+        public long getId() {
+            return mId;
+        }
+
+        public int getViewType() {
+            return mViewType;
+        }
+
+        public void setViewType(int viewType) {
+            this.mViewType = viewType;
+        }
+
+        public void setAllCornerRadius(float allCornerRadius) {
+            mTopLeftCornerRadius = allCornerRadius;
+            mTopRightCornerRadius = allCornerRadius;
+            mBottomLeftCornerRadius = allCornerRadius;
+            mBottomRightCornerRadius = allCornerRadius;
+        }
+
+        public float getTopLeftCornerRadius() {
+            return mTopLeftCornerRadius;
+        }
+
+        public void setTopLeftCornerRadius(float topLeftCornerRadius) {
+            this.mTopLeftCornerRadius = topLeftCornerRadius;
+        }
+
+        public float getTopRightCornerRadius() {
+            return mTopRightCornerRadius;
+        }
+
+        public void setTopRightCornerRadius(float topRightCornerRadius) {
+            this.mTopRightCornerRadius = topRightCornerRadius;
+        }
+
+        public float getBottomLeftCornerRadius() {
+            return mBottomLeftCornerRadius;
+        }
+
+        public void setBottomLeftCornerRadius(float bottomLeftCornerRadius) {
+            this.mBottomLeftCornerRadius = bottomLeftCornerRadius;
+        }
+
+        public float getBottomRightCornerRadius() {
+            return mBottomRightCornerRadius;
+        }
+
+        public void setBottomRightCornerRadius(float bottomRightCornerRadius) {
+            this.mBottomRightCornerRadius = bottomRightCornerRadius;
+        }
+
+        public float getBorderWidth() {
+            return mBorderWidth;
+        }
+
+        public void setBorderWidth(float borderWidth) {
+            if (borderWidth < 0) {
+                throw new IllegalArgumentException("Border width must not be negative: " + borderWidth);
+            }
+            this.mBorderWidth = borderWidth;
+        }
+
+        public int getBorderColor() {
+            return mBorderColor;
+        }
+
+        public void setBorderColor(int borderColor) {
+            this.mBorderColor = borderColor;
+        }
+
+        public int getFirstWaveColor() {
+            return mFirstWaveColor;
+        }
+
+        public void setFirstWaveColor(int firstWaveColor) {
+            this.mFirstWaveColor = firstWaveColor;
+        }
+
+        public int getWaveHeightMode() {
+            return mWaveHeightMode;
+        }
+
+        public void setWaveHeightMode(int waveHeightMode) {
+            this.mWaveHeightMode = waveHeightMode;
+        }
+
+        public int getWaveMultipleMode() {
+            return mWaveMultipleMode;
+        }
+
+        public void setWaveMultipleMode(int waveMultipleMode) {
+            this.mWaveMultipleMode = waveMultipleMode;
+        }
+
+        public float getProgress() {
+            return mProgress;
+        }
+
+        public void setProgress(float progress) {
+            this.mProgress = progress;
+        }
+
+        /**
+         * @return the custom wave layers, or null for the default waves
+         */
+        public List<WaveLayer> getWaveLayers() {
+            return mWaveLayers == null ? null : Arrays.asList(mWaveLayers.clone());
+        }
+
+        /**
+         * @param layers waves from front to back, or null for the default waves
+         * @see WaveProgressView#setWaveLayers(List)
+         */
+        public void setWaveLayers(List<WaveLayer> layers) {
+            this.mWaveLayers = layers == null ? null : layers.toArray(new WaveLayer[layers.size()]);
+        }
+
+        Gauge copy() {
+            Gauge gauge = new Gauge(mId);
+            gauge.mViewType = mViewType;
+            gauge.mTopLeftCornerRadius = mTopLeftCornerRadius;
+            gauge.mTopRightCornerRadius = mTopRightCornerRadius;
+            gauge.mBottomLeftCornerRadius = mBottomLeftCornerRadius;
+            gauge.mBottomRightCornerRadius = mBottomRightCornerRadius;
+            gauge.mBorderWidth = mBorderWidth;
+            gauge.mBorderColor = mBorderColor;
+            gauge.mFirstWaveColor = mFirstWaveColor;
+            gauge.mWaveHeightMode = mWaveHeightMode;
+            gauge.mWaveMultipleMode = mWaveMultipleMode;
+            gauge.mProgress = mProgress;
+            // Layers are immutable, so the array can be shared
+            gauge.mWaveLayers = mWaveLayers;
+            return gauge;
+        }
+    }
+}
@@ -0,0 +1,686 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.Surface;
+import android.view.TextureView;
+import android.view.View;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static ru.mdsps.views.waveprogressview.WaveProgressView.VIEW_TYPE_CIRCLE;
+import static ru.mdsps.views.waveprogressview.WaveProgressView.VIEW_TYPE_SQUARE;
+
+/**
+ * Variant of {@link WaveProgressView} that draws on its own render thread
+ * into a {@link TextureView}, so the wave animation does not use the main
+ * thread. Takes the same {@code wpv_*} attributes. The thread lives while the
+ * surface exists and pauses while the view is hidden.
+ * <p>
+ * TextureView does not support background drawables; {@code android:background}
+ * must not be set on this view.
+ */
+
+public class WaveProgressTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+
+    private final static int DEFAULT_FRAME_RATE = 60;
+
+    // Attributes as set on the main thread, guarded by its own lock. The render
+    // thread draws a private copy and only locks this one to sync it per frame.
+    private final WaveRenderer mRenderer = new WaveRenderer();
+
+    private RenderThread mRenderThread;
+    private boolean mAnimationEnabled = true;
+    private int mTargetFrameRate = DEFAULT_FRAME_RATE;
+
+    public WaveProgressTextureView(Context context) {
+        this(context, null);
+    }
+
+    public WaveProgressTextureView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public WaveProgressTextureView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context, attrs, defStyleAttr);
+    }
+
+    public float getAllCornerRadius() {
+        synchronized (mRenderer) {
+            return px2dp(mRenderer.getAllCornerRadius());
+        }
+    }
+
+    public void setAllCornerRadius(float allCornerRadius) {
+        synchronized (mRenderer) {
+            mRenderer.setAllCornerRadius(dp2px(allCornerRadius));
+        }
+        requestRender();
+    }
+
+    public int getBorderColor() {
+        synchronized (mRenderer) {
+            return mRenderer.getBorderColor();
+        }
+    }
+
+    public void setBorderColor(int borderColor) {
+        synchronized (mRenderer) {
+            mRenderer.setBorderColor(borderColor);
+        }
+        requestRender();
+    }
+
+    public float getBorderWidth() {
+        synchronized (mRenderer) {
+            return px2dp(mRenderer.getBorderWidth());
+        }
+    }
+
+    public void setBorderWidth(float borderWidth) {
+        synchronized (mRenderer) {
+            mRenderer.setBorderWidth(dp2px(borderWidth));
+        }
+        requestRender();
+    }
+
+    public float getBottomLeftCornerRadius() {
+        synchronized (mRenderer) {
+            return px2dp(mRenderer.getBottomLeftCornerRadius());
+        }
+    }
+
+    public void setBottomLeftCornerRadius(float bottomLeftCornerRadius) {
+        synchronized (mRenderer) {
+            mRenderer.setBottomLeftCornerRadius(dp2px(bottomLeftCornerRadius));
+        }
+        requestRender();
+    }
+
+    public float getBottomRightCornerRadius() {
+        synchronized (mRenderer) {
+            return px2dp(mRenderer.getBottomRightCornerRadius());
+        }
+    }
+
+    public void setBottomRightCornerRadius(float bottomRightCornerRadius) {
+        synchronized (mRenderer) {
+            mRenderer.setBottomRightCornerRadius(dp2px(bottomRightCornerRadius));
+        }
+        requestRender();
+    }
+
+    public float getTopLeftCornerRadius() {
+        synchronized (mRenderer) {
+            return px2dp(mRenderer.getTopLeftCornerRadius());
+        }
+    }
+
+    public void setTopLeftCornerRadius(float topLeftCornerRadius) {
+        synchronized (mRenderer) {
+            mRenderer.setTopLeftCornerRadius(dp2px(topLeftCornerRadius));
+        }
+        requestRender();
+    }
+
+    public float getTopRightCornerRadius() {
+        synchronized (mRenderer) {
+            return px2dp(mRenderer.getTopRightCornerRadius());
+        }
+    }
+
+    public void setTopRightCornerRadius(float topRightCornerRadius) {
+        synchronized (mRenderer) {
+            mRenderer.setTopRightCornerRadius(dp2px(topRightCornerRadius));
+        }
+        requestRender();
+    }
+
+    public int getFirstWaveColor() {
+        synchronized (mRenderer) {
+            return mRenderer.getFirstWaveColor();
+        }
+    }
+
+    public void setFirstWaveColor(int firstWaveColor) {
+        synchronized (mRenderer) {
+            mRenderer.setFirstWaveColor(firstWaveColor);
+        }
+        requestRender();
+    }
+
+    public int getWaveHeightMode() {
+        synchronized (mRenderer) {
+            return mRenderer.getWaveHeightMode();
+        }
+    }
+
+    public void setWaveHeightMode(int mWaveHeightMode) {
+        synchronized (mRenderer) {
+            mRenderer.setWaveHeightMode(mWaveHeightMode);
+        }
+        requestRender();
+    }
+
+    public int getWaveMultipleMode() {
+        synchronized (mRenderer) {
+            return mRenderer.getWaveMultipleMode();
+        }
+    }
+
+    public void setWaveMultipleMode(int mWaveMultipleMode) {
+        synchronized (mRenderer) {
+            mRenderer.setWaveMultipleMode(mWaveMultipleMode);
+        }
+        requestRender();
+    }
+
+    public float getWaveSpeed() {
+        synchronized (mRenderer) {
+            return mRenderer.getWaveSpeed();
+        }
+    }
+
+    /**
+     * @param waveSpeed wave movement in cycles per second
+     */
+    public void setWaveSpeed(float waveSpeed) {
+        synchronized (mRenderer) {
+            mRenderer.setWaveSpeed(waveSpeed);
+        }
+    }
+
+    public int getViewType() {
+        synchronized (mRenderer) {
+            return mRenderer.getViewType();
+        }
+    }
+
+    public void setViewType(int viewType) {
+        int oldViewType;
+        synchronized (mRenderer) {
+            oldViewType = mRenderer.getViewType();
+            mRenderer.setViewType(viewType);
+        }
+        // Only square shapes change the measured size
+        if (isSquare(viewType) != isSquare(oldViewType)) {
+            requestLayout();
+        }
+        requestRender();
+    }
+
+    public float getProgress() {
+        synchronized (mRenderer) {
+            return mRenderer.getProgress();
+        }
+    }
+
+    public void setProgress(float progress) {
+        setProgress(progress, false);
+    }
+
+    /**
+     * Sets the fill level. With {@code animate} the level moves to the new
+     * value over {@link #getProgressAnimationDuration()} milliseconds.
+     */
+    public void setProgress(float progress, boolean animate) {
+        synchronized (mRenderer) {
+            mRenderer.setProgress(progress, animate);
+        }
+        requestRender();
+    }
+
+    public long getProgressAnimationDuration() {
+        synchronized (mRenderer) {
+            return mRenderer.getProgressAnimationDuration();
+        }
+    }
+
+    public void setProgressAnimationDuration(long duration) {
+        synchronized (mRenderer) {
+            mRenderer.setProgressAnimationDuration(duration);
+        }
+    }
+
+    public List<WaveLayer> getWaveLayers() {
+        synchronized (mRenderer) {
+            return Arrays.asList(mRenderer.getWaveLayers());
+        }
+    }
+
+    /**
+     * @see WaveProgressView#setWaveLayers(List)
+     */
+    public void setWaveLayers(List<WaveLayer> layers) {
+        WaveLayer[] array = layers == null ? null : layers.toArray(new WaveLayer[layers.size()]);
+        synchronized (mRenderer) {
+            mRenderer.setWaveLayers(array);
+        }
+        requestRender();
+    }
+
+    public boolean isAdaptiveQualityEnabled() {
+        synchronized (mRenderer) {
+            return mRenderer.isAdaptiveQualityEnabled();
+        }
+    }
+
+    /**
+     * @see WaveProgressView#setAdaptiveQualityEnabled(boolean)
+     */
+    public void setAdaptiveQualityEnabled(boolean adaptiveQuality) {
+        synchronized (mRenderer) {
+            mRenderer.setAdaptiveQualityEnabled(adaptiveQuality);
+        }
+        requestRender();
+    }
+
+    public long getAdaptiveQualityBudgetNanos() {
+        synchronized (mRenderer) {
+            return mRenderer.getAdaptiveQualityBudgetNanos();
+        }
+    }
+
+    /**
+     * @param budgetNanos draw time per frame this view may use
+     */
+    public void setAdaptiveQualityBudgetNanos(long budgetNanos) {
+        synchronized (mRenderer) {
+            mRenderer.setAdaptiveQualityBudgetNanos(budgetNanos);
+        }
+    }
+
+    public WaveFrameMetrics getFrameMetrics() {
+        synchronized (mRenderer) {
+            return mRenderer.getFrameMetrics();
+        }
+    }
+
+    /**
+     * Attaches frame statistics and systrace sections to this view. Frames
+     * are recorded on the render thread. Pass null to turn them off.
+     */
+    public void setFrameMetrics(WaveFrameMetrics metrics) {
+        synchronized (mRenderer) {
+            mRenderer.setFrameMetrics(metrics);
+        }
+    }
+
+    public int getTargetFrameRate() {
+        return mTargetFrameRate;
+    }
+
+    public void setTargetFrameRate(int targetFrameRate) {
+        if (targetFrameRate <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + targetFrameRate);
+        }
+        this.mTargetFrameRate = targetFrameRate;
+        updateRenderState();
+    }
+
+    /**
+     * Starts the wave animation. It only ticks while the surface exists and
+     * the view is shown.
+     */
+    public void start() {
+        mAnimationEnabled = true;
+        updateRenderState();
+    }
+
+    /**
+     * Stops the wave animation. The current frame stays on screen.
+     */
+    public void stop() {
+        mAnimationEnabled = false;
+        updateRenderState();
+    }
+
+    public boolean isAnimating() {
+        return mAnimationEnabled && mRenderThread != null && isRenderVisible();
+    }
+
+    private void init(Context context, AttributeSet attrs, int defStyleAttr) {
+        TypedArray a = context.obtainStyledAttributes(attrs,
+                R.styleable.WaveProgressView, defStyleAttr, 0);
+        if (a != null) {
+            mRenderer.readAttributes(a);
+            a.recycle();
+        }
+
+        setOpaque(false);
+        setSurfaceTextureListener(this);
+    }
+
+    private boolean isRenderVisible() {
+        return getWindowVisibility() == View.VISIBLE && isShown();
+    }
+
+    private void updateRenderState() {
+        if (mRenderThread == null) {
+            return;
+        }
+        boolean moveWaves;
+        synchronized (mRenderer) {
+            moveWaves = mAnimationEnabled && mRenderer.getDurationScale() > 0;
+        }
+        mRenderThread.update(isRenderVisible(), moveWaves, mTargetFrameRate);
+    }
+
+    private void updateDurationScale() {
+        float durationScale = WaveProgressView.getSystemDurationScale(getContext());
+        synchronized (mRenderer) {
+            mRenderer.setDurationScale(durationScale);
+        }
+        updateRenderState();
+    }
+
+    private void requestRender() {
+        if (mRenderThread != null) {
+            mRenderThread.wake();
+        }
+    }
+
+    private void updateBounds(int width, int height) {
+        synchronized (mRenderer) {
+            mRenderer.setBounds(width, height, getPaddingLeft(), getPaddingTop(),
+                    getPaddingRight(), getPaddingBottom());
+        }
+    }
+
+    private int px2dp(float px) {
+        return WaveProgressView.px2dp(getResources(), px);
+    }
+
+    private float dp2px(float dp) {
+        return WaveProgressView.dp2px(getResources(), dp);
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+        updateBounds(width, height);
+        mRenderThread = new RenderThread(mRenderer, surface);
+        mRenderThread.startRendering();
+        updateRenderState();
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+        updateBounds(width, height);
+        requestRender();
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+        if (mRenderThread != null) {
+            mRenderThread.quitAndWait();
+            mRenderThread = null;
+        }
+        return true;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+    }
+
+    private static boolean isSquare(int viewType) {
+        return viewType == VIEW_TYPE_CIRCLE || viewType == VIEW_TYPE_SQUARE;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        int viewType;
+        synchronized (mRenderer) {
+            viewType = mRenderer.getViewType();
+        }
+        if(isSquare(viewType)) {
+            int size = Math.min(getMeasuredWidth(), getMeasuredHeight());
+            setMeasuredDimension(size, size);
+        }
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        // Padding changes do not always change the surface size
+        updateBounds(getWidth(), getHeight());
+        requestRender();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateDurationScale();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        if (hasWindowFocus) {
+            updateDurationScale();
+        }
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateRenderState();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateRenderState();
+    }
+
+    /**
+     * Looper thread that owns the surface. Ticks on its own
+     * {@link Choreographer} while the waves or the progress move, and draws a
+     * single frame when an attribute changes. Draws a private renderer that
+     * is synced from the main-thread one before each frame, so setters never
+     * wait for a frame to finish.
+     */
+    private static final class RenderThread extends HandlerThread {
+
+        private final static long FALLBACK_FRAME_DELAY = 16;
+
+        private final WaveRenderer mSource;
+        // Render thread only
+        private final WaveRenderer mRenderer = new WaveRenderer();
+        private final Surface mSurface;
+        // Only created on API 16+, so older devices never load Choreographer types
+        private FrameCallback mFrameCallback;
+        private final FramePacer mPacer = new FramePacer();
+        private Handler mHandler;
+
+        private volatile boolean mVisible;
+        private volatile boolean mMoveWaves;
+        private volatile int mFrameRate = DEFAULT_FRAME_RATE;
+
+        // Render thread only
+        private boolean mLooping;
+
+        private final Runnable mWake = new Runnable() {
+            @Override
+            public void run() {
+                onWake();
+            }
+        };
+
+        private final Runnable mFallbackFrame = new Runnable() {
+            @Override
+            public void run() {
+                doFrame(System.nanoTime());
+            }
+        };
+
+        RenderThread(WaveRenderer source, SurfaceTexture surfaceTexture) {
+            super("WaveRenderThread", Process.THREAD_PRIORITY_DISPLAY);
+            mSource = source;
+            mSurface = new Surface(surfaceTexture);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mFrameCallback = new FrameCallback(this);
+            }
+        }
+
+        void startRendering() {
+            start();
+            mHandler = new Handler(getLooper());
+        }
+
+        void update(boolean visible, boolean moveWaves, int frameRate) {
+            mVisible = visible;
+            mMoveWaves = moveWaves;
+            mFrameRate = frameRate;
+            wake();
+        }
+
+        void wake() {
+            mHandler.removeCallbacks(mWake);
+            mHandler.post(mWake);
+        }
+
+        /**
+         * Stops the looper and waits for the frame in progress, so the surface
+         * can be released right after.
+         */
+        void quitAndWait() {
+            quit();
+            boolean interrupted = false;
+            while (isAlive()) {
+                try {
+                    join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            mSurface.release();
+            // The thread is gone, so its renderer can be released from here
+            mRenderer.release();
+        }
+
+        private void onWake() {
+            if (!mVisible) {
+                cancelFrame();
+                return;
+            }
+            if (mLooping) {
+                // The next frame picks up the change
+                return;
+            }
+            syncAttributes();
+            drawFrame();
+            if (isMoving()) {
+                mPacer.reset();
+                mRenderer.resetFrameTime();
+                scheduleFrame();
+            }
+        }
+
+        void doFrame(long frameTimeNanos) {
+            mLooping = false;
+            if (!mVisible) {
+                return;
+            }
+            if (mPacer.shouldDraw(frameTimeNanos, mFrameRate)) {
+                syncAttributes();
+                mRenderer.advance(frameTimeNanos, mMoveWaves);
+                drawFrame();
+            }
+            if (isMoving()) {
+                scheduleFrame();
+            }
+        }
+
+        private boolean isMoving() {
+            // Waves out of sight leave nothing to redraw
+            return mMoveWaves && mRenderer.hasWaveBand() || mRenderer.isProgressAnimating();
+        }
+
+        /**
+         * Copies attribute and progress changes made on the main thread. The
+         * lock is held only for the copy, never while drawing.
+         */
+        private void syncAttributes() {
+            synchronized (mSource) {
+                mRenderer.copyAttributesFrom(mSource);
+            }
+        }
+
+        private void scheduleFrame() {
+            mLooping = true;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mFrameCallback.post();
+            } else {
+                mHandler.postDelayed(mFallbackFrame, FALLBACK_FRAME_DELAY);
+            }
+        }
+
+        private void cancelFrame() {
+            if (!mLooping) {
+                return;
+            }
+            mLooping = false;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mFrameCallback.remove();
+            } else {
+                mHandler.removeCallbacks(mFallbackFrame);
+            }
+        }
+
+        private void drawFrame() {
+            Canvas canvas;
+            try {
+                canvas = mSurface.lockCanvas(null);
+            } catch (Surface.OutOfResourcesException | IllegalArgumentException e) {
+                return;
+            }
+            if (canvas == null) {
+                return;
+            }
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                mRenderer.draw(canvas);
+            } finally {
+                mSurface.unlockCanvasAndPost(canvas);
+            }
+        }
+
+        private static final class FrameCallback implements Choreographer.FrameCallback {
+
+            private final RenderThread mThread;
+
+            FrameCallback(RenderThread thread) {
+                mThread = thread;
+            }
+
+            void post() {
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+
+            void remove() {
+                Choreographer.getInstance().removeFrameCallback(this);
+            }
+
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                mThread.doFrame(frameTimeNanos);
+            }
+        }
+    }
+}
@@ -1,20 +1,25 @@
 package ru.mdsps.views.waveprogressview;
 
+import android.animation.TimeInterpolator;
+import android.content.ContentResolver;
 import android.content.Context;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
-import android.graphics.BitmapShader;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Path;
-import android.graphics.RectF;
-import android.graphics.Shader;
-import android.graphics.drawable.BitmapDrawable;
-import android.graphics.drawable.ColorDrawable;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Settings;
 import android.util.AttributeSet;
 import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by Demin.M on 01.11.2016
@@ -28,60 +33,78 @@ public class WaveProgressView extends View {
     public static final int VIEW_TYPE_SQUARE = 3;
     public static final int VIEW_TYPE_CIRCLE = 4;
 
-    private final static int FIRST_WAVE_ALPHA = 180;
-    private final static int SECOND_WAVE_ALPHA = 90;
-    private final static int THIRD_WAVE_ALPHA = 70;
-    private final static int WAVE_HEIGHT_LARGE = 24;
-    private final static int WAVE_HEIGHT_MIDDLE = 16;
-    private final static int WAVE_HEIGHT_LITTLE = 8;
-
-    private final static float WAVE_LENGTH_MULTIPLE_LARGE = 1.5f;
-    private final static float WAVE_LENGTH_MULTIPLE_MIDDLE = 1f;
-    private final static float WAVE_LENGTH_MULTIPLE_LITTLE = 0.5f;
-
-    private final static float X_SPACE = 20;
-    private final static double PI2 = 2 * Math.PI;
-
-    private float topLeftCornerRadius = 0f;
-    private float topRightCornerRadius = 0f;
-    private float bottomLeftCornerRadius = 0f;
-    private float bottomRightCornerRadius = 0f;
-    private float allCornerRadius = 0f;
-    private float borderWidth = 0f;
-    private float progress = 50f;
-    private float mRealProgress = 100 - progress;
-
-    private int mWaveMultipleMode;
-    private int mWaveHeightMode;
-
-    private int viewType = 0;
-    private int firstWaveColor = Color.BLUE;
-    private int borderColor = Color.BLACK;
-
-    private Drawable backgroundDrawable;
-
-    private Path mFirstWave = new Path();
-    private Path mSecondWave = new Path();
-    private Path mThirdWave = new Path();
-    private Path mBorder = new Path();
-
-    private Paint mWavePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    private Paint mFirstWavePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    private Paint mSecondWavePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    private Paint mThirdWavePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-    private Paint mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-
-    private RectF mBounds = new RectF();
-    private RectF mBorderBounds = new RectF();
-
-    private float[] mRadii = new float[] { 0, 0, 0, 0, 0, 0, 0, 0 };
-    private float[] mBorderRadii = new float[] { 0, 0, 0, 0, 0, 0, 0, 0 };
-
-    private float mFirstWaveOffset = 0.0f;
-    private float mSecondWaveOffset;
-    private float mThirdWaveOffset;
-
-    private RefreshProgressRunnable mRefreshProgressRunnable;
+    public static final int RENDER_MODE_BITMAP = 1;
+    /**
+     * Android 9 (API 28) and newer. Older releases do not anti-alias path
+     * clips, so there it draws exactly like {@link #RENDER_MODE_BITMAP}.
+     */
+    public static final int RENDER_MODE_DIRECT = 2;
+    public static final int RENDER_MODE_BATCHED = 3;
+
+    private final static int DEFAULT_FRAME_RATE = 60;
+    private final static int DEFAULT_SCROLL_FRAME_RATE = 15;
+    private final static long SCROLL_IDLE_NANOS = 150000000L;
+    private final static int DEFAULT_IDLE_FRAME_RATE = 0;
+    // How long a detached scroll-aware view keeps its buffers for a rebind
+    final static long DETACHED_RELEASE_DELAY = 1000;
+    // Pending progress: float bits in the low word, animate flag above them
+    private final static long NO_PENDING_PROGRESS = -1L;
+    private final static long PENDING_ANIMATE = 1L << 32;
+
+    private final static int SCROLL_VISIBILITY_FULL = 0;
+    private final static int SCROLL_VISIBILITY_PARTIAL = 1;
+    private final static int SCROLL_VISIBILITY_HIDDEN = 2;
+
+    private WaveProgressDrawable mDrawable = new WaveProgressDrawable();
+
+    private FrameLoop mFrameLoop = new FrameLoop();
+    private int mTargetFrameRate = DEFAULT_FRAME_RATE;
+    private boolean mAnimationEnabled = true;
+    private boolean mAttached;
+
+    private boolean mScrollAware;
+    private int mScrollFrameRate = DEFAULT_SCROLL_FRAME_RATE;
+    private int mScrollVisibility = SCROLL_VISIBILITY_FULL;
+    // Detached views have no run queue of their own
+    private Handler mReleaseHandler;
+    private final Runnable mReleaseBuffers = new Runnable() {
+        @Override
+        public void run() {
+            if (!mAttached) {
+                mDrawable.release();
+            }
+        }
+    };
+    private long mLastScrollTimeNanos;
+    private Rect mVisibleRect = new Rect();
+
+    private long mIdleTimeout;
+    private int mIdleFrameRate = DEFAULT_IDLE_FRAME_RATE;
+    private long mLastProgressChangeNanos;
+
+    // Inside Editor.apply(): invalidation and layout are deferred to its end
+    private boolean mBatching;
+    private boolean mInvalidatePending;
+    private boolean mLayoutPending;
+
+    private final AtomicLong mPendingProgress = new AtomicLong(NO_PENDING_PROGRESS);
+    private final AtomicBoolean mPendingProgressPosted = new AtomicBoolean();
+    private final Runnable mApplyPendingProgress = new Runnable() {
+        @Override
+        public void run() {
+            // Cleared first, so a value written while applying posts again
+            mPendingProgressPosted.set(false);
+            applyPendingProgress();
+        }
+    };
+    private ViewTreeObserver.OnScrollChangedListener mScrollListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+                @Override
+                public void onScrollChanged() {
+                    mLastScrollTimeNanos = System.nanoTime();
+                    updateScrollVisibility();
+                }
+            };
 
     public WaveProgressView(Context context) {
         this(context, null);
@@ -97,451 +120,978 @@ public class WaveProgressView extends View {
     }
 
     public float getAllCornerRadius() {
-        return px2dp(allCornerRadius);
+        return px2dp(mDrawable.getAllCornerRadius());
     }
 
     public void setAllCornerRadius(float allCornerRadius) {
-        this.allCornerRadius = dp2px(allCornerRadius);
-        invalidate();
+        mDrawable.setAllCornerRadius(dp2px(allCornerRadius));
     }
 
     public int getBorderColor() {
-        return borderColor;
+        return mDrawable.getBorderColor();
     }
 
     public void setBorderColor(int borderColor) {
-        this.borderColor = borderColor;
-        invalidate();
+        mDrawable.setBorderColor(borderColor);
     }
 
     public float getBorderWidth() {
-        return px2dp(borderWidth);
+        return px2dp(mDrawable.getBorderWidth());
     }
 
     public void setBorderWidth(float borderWidth) {
-        this.borderWidth = dp2px(borderWidth);
-        invalidate();
+        mDrawable.setBorderWidth(dp2px(borderWidth));
     }
 
     public float getBottomLeftCornerRadius() {
-        return px2dp(bottomLeftCornerRadius);
+        return px2dp(mDrawable.getBottomLeftCornerRadius());
     }
 
     public void setBottomLeftCornerRadius(float bottomLeftCornerRadius) {
-        this.bottomLeftCornerRadius = dp2px(bottomLeftCornerRadius);
-        invalidate();
+        mDrawable.setBottomLeftCornerRadius(dp2px(bottomLeftCornerRadius));
     }
 
     public float getBottomRightCornerRadius() {
-        return px2dp(bottomRightCornerRadius);
+        return px2dp(mDrawable.getBottomRightCornerRadius());
     }
 
     public void setBottomRightCornerRadius(float bottomRightCornerRadius) {
-        this.bottomRightCornerRadius = dp2px(bottomRightCornerRadius);
-        invalidate();
+        mDrawable.setBottomRightCornerRadius(dp2px(bottomRightCornerRadius));
     }
 
     public int getFirstWaveColor() {
-        return firstWaveColor;
+        return mDrawable.getFirstWaveColor();
     }
 
     public void setFirstWaveColor(int firstWaveColor) {
-        this.firstWaveColor = firstWaveColor;
-        invalidate();
+        mDrawable.setFirstWaveColor(firstWaveColor);
     }
 
     public int getWaveHeightMode() {
-        return mWaveHeightMode;
+        return mDrawable.getWaveHeightMode();
     }
 
     public void setWaveHeightMode(int mWaveHeightMode) {
-        this.mWaveHeightMode = mWaveHeightMode;
-        invalidate();
+        mDrawable.setWaveHeightMode(mWaveHeightMode);
     }
 
     public int getWaveMultipleMode() {
-        return mWaveMultipleMode;
+        return mDrawable.getWaveMultipleMode();
     }
 
     public void setWaveMultipleMode(int mWaveMultipleMode) {
-        this.mWaveMultipleMode = mWaveMultipleMode;
-        invalidate();
+        mDrawable.setWaveMultipleMode(mWaveMultipleMode);
     }
 
     public float getProgress() {
-        return progress;
+        return mDrawable.getProgress();
     }
 
     public void setProgress(float progress) {
-        this.progress = progress;
-        mRealProgress = 100 - progress;
-        invalidate();
+        setProgress(progress, false);
+    }
+
+    /**
+     * Sets the fill level. With {@code animate} the level moves to the new
+     * value over {@link #getProgressAnimationDuration()} milliseconds.
+     */
+    public void setProgress(float progress, boolean animate) {
+        boolean changed = progress != mDrawable.getProgress();
+        mDrawable.setProgress(progress, animate);
+        if (changed) {
+            // Wakes an idle view
+            mLastProgressChangeNanos = System.nanoTime();
+            updateAnimationState();
+        }
+        invalidateContent();
+    }
+
+    /**
+     * Thread-safe {@link #setProgress(float)} for producers on any thread,
+     * such as download callbacks. Only the latest value is kept and the view
+     * picks it up once per frame, so any number of calls in between cost a
+     * single main-thread message.
+     */
+    public void postProgress(float progress) {
+        postProgress(progress, false);
+    }
+
+    /**
+     * Thread-safe {@link #setProgress(float, boolean)}.
+     *
+     * @see #postProgress(float)
+     */
+    public void postProgress(float progress, boolean animate) {
+        if (Float.isNaN(progress)) {
+            throw new IllegalArgumentException("Progress must be a number");
+        }
+        long bits = Float.floatToIntBits(progress) & 0xFFFFFFFFL;
+        mPendingProgress.set(animate ? bits | PENDING_ANIMATE : bits);
+        if (mPendingProgressPosted.compareAndSet(false, true)) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                postOnAnimation(mApplyPendingProgress);
+            } else {
+                post(mApplyPendingProgress);
+            }
+        }
+    }
+
+    private void applyPendingProgress() {
+        long pending = mPendingProgress.getAndSet(NO_PENDING_PROGRESS);
+        if (pending != NO_PENDING_PROGRESS) {
+            setProgress(Float.intBitsToFloat((int) pending), (pending & PENDING_ANIMATE) != 0);
+        }
+    }
+
+    public long getProgressAnimationDuration() {
+        return mDrawable.getProgressAnimationDuration();
+    }
+
+    public void setProgressAnimationDuration(long duration) {
+        mDrawable.setProgressAnimationDuration(duration);
+    }
+
+    public TimeInterpolator getProgressInterpolator() {
+        return mDrawable.getProgressInterpolator();
+    }
+
+    public void setProgressInterpolator(TimeInterpolator interpolator) {
+        mDrawable.setProgressInterpolator(interpolator);
+    }
+
+    public float getWaveSpeed() {
+        return mDrawable.getWaveSpeed();
+    }
+
+    /**
+     * @param waveSpeed wave movement in cycles per second
+     */
+    public void setWaveSpeed(float waveSpeed) {
+        mDrawable.setWaveSpeed(waveSpeed);
     }
 
     public float getTopLeftCornerRadius() {
-        return px2dp(topLeftCornerRadius);
+        return px2dp(mDrawable.getTopLeftCornerRadius());
     }
 
     public void setTopLeftCornerRadius(float topLeftCornerRadius) {
-        this.topLeftCornerRadius = dp2px(topLeftCornerRadius);
-        invalidate();
+        mDrawable.setTopLeftCornerRadius(dp2px(topLeftCornerRadius));
     }
 
     public float getTopRightCornerRadius() {
-        return px2dp(topRightCornerRadius);
+        return px2dp(mDrawable.getTopRightCornerRadius());
     }
 
     public void setTopRightCornerRadius(float topRightCornerRadius) {
-        this.topRightCornerRadius = dp2px(topRightCornerRadius);
-        invalidate();
+        mDrawable.setTopRightCornerRadius(dp2px(topRightCornerRadius));
     }
 
     public int getViewType() {
-        return viewType;
+        return mDrawable.getViewType();
     }
 
+    /**
+     * Changes the shape. Only a change between the square shapes (square,
+     * circle) and the free ones (rectangle, oval) can change the measured
+     * size, so only that requests a layout.
+     */
     public void setViewType(int viewType) {
-        setVisibility(View.GONE);
-        this.viewType = viewType;
-        invalidate();
-        setVisibility(View.VISIBLE);
+        int oldViewType = mDrawable.getViewType();
+        if (viewType == oldViewType) {
+            return;
+        }
+        mDrawable.setViewType(viewType);
+        if (isSquare(viewType) != isSquare(oldViewType)) {
+            if (mBatching) {
+                mLayoutPending = true;
+            } else {
+                requestLayout();
+            }
+        }
     }
 
-    private void init(Context context, AttributeSet attrs, int defStyleAttr){
-        TypedArray a = context.obtainStyledAttributes(attrs,
-                R.styleable.WaveProgressView, defStyleAttr, 0);
-        if(a != null){
-            viewType = a.getInt(R.styleable.WaveProgressView_wpv_type, VIEW_TYPE_RECTANGLE);
-            topLeftCornerRadius = a.getDimensionPixelSize(
-                    R.styleable.WaveProgressView_wpv_top_left_corner_radius, 0);
-            topRightCornerRadius = a.getDimensionPixelSize(
-                    R.styleable.WaveProgressView_wpv_top_right_corner_radius, 0);
-            bottomLeftCornerRadius = a.getDimensionPixelSize(
-                    R.styleable.WaveProgressView_wpv_bottom_left_corner_radius, 0);
-            bottomRightCornerRadius = a.getDimensionPixelSize(
-                    R.styleable.WaveProgressView_wpv_bottom_right_corner_radius, 0);
-            allCornerRadius = a.getDimensionPixelSize(
-                    R.styleable.WaveProgressView_wpv_corner_radius, 0);
-            firstWaveColor = a.getColor(R.styleable.WaveProgressView_wpv_wave_color, Color.BLUE);
-            borderColor = a.getColor(R.styleable.WaveProgressView_wpv_border_color, Color.BLACK);
-            borderWidth = a.getDimensionPixelSize(
-                    R.styleable.WaveProgressView_wpv_border_width, 0);
-            progress = a.getFloat(R.styleable.WaveProgressView_wpv_progress, 50f);
-            mWaveMultipleMode = a.getInt(R.styleable.WaveProgressView_wpv_wave_length, 1);
-            mWaveHeightMode = a.getInt(R.styleable.WaveProgressView_wpv_wave_height, 1);
+    public int getRenderMode() {
+        return mDrawable.getRenderMode();
+    }
 
-            a.recycle();
+    /**
+     * Selects how the waves reach the screen. {@link #RENDER_MODE_DIRECT}
+     * clips the view canvas to the shape and draws the waves straight onto it
+     * on Android 9 (API 28) and newer, where path clips are anti-aliased on
+     * both canvas types; before that it is {@link #RENDER_MODE_BITMAP}.
+     * {@link #RENDER_MODE_BATCHED} draws all
+     * wave layers as one vertex mesh, which keeps many layers cheap but leaves
+     * the wave edges aliased; it is drawn directly on Android Q and newer and
+     * through the wave bitmap before that.
+     */
+    public void setRenderMode(int renderMode) {
+        mDrawable.setRenderMode(renderMode);
+    }
 
-            backgroundDrawable = getBackground();
-            setBackgroundResource(0);
+    public boolean isScrollAware() {
+        return mScrollAware;
+    }
+
+    /**
+     * List-friendly mode for views inside scrolling containers. While the
+     * window scrolls the view animates at {@link #getScrollFrameRate()}.
+     * Rows that are partly clipped keep their waves still, also once the
+     * scroll has stopped, and rows scrolled out of sight stop ticking. A
+     * detached view keeps its wave phase, and its buffers for about a
+     * second, so a recycled row does not rebuild them when it is bound
+     * again. A view that stays detached frees them.
+     */
+    public void setScrollAware(boolean scrollAware) {
+        if (mScrollAware == scrollAware) {
+            return;
+        }
+        this.mScrollAware = scrollAware;
+        if (mAttached) {
+            if (scrollAware) {
+                getViewTreeObserver().addOnScrollChangedListener(mScrollListener);
+                updateScrollVisibility();
+            } else {
+                getViewTreeObserver().removeOnScrollChangedListener(mScrollListener);
+                mScrollVisibility = SCROLL_VISIBILITY_FULL;
+                updateAnimationState();
+            }
         }
+    }
+
+    public int getScrollFrameRate() {
+        return mScrollFrameRate;
+    }
 
-        if(allCornerRadius > 0){
-            topLeftCornerRadius = allCornerRadius;
-            topRightCornerRadius = allCornerRadius;
-            bottomLeftCornerRadius = allCornerRadius;
-            bottomRightCornerRadius = allCornerRadius;
+    /**
+     * @param scrollFrameRate frame rate while the parent scrolls, 0 to pause
+     */
+    public void setScrollFrameRate(int scrollFrameRate) {
+        if (scrollFrameRate < 0) {
+            throw new IllegalArgumentException("Frame rate must not be negative: " + scrollFrameRate);
         }
+        this.mScrollFrameRate = scrollFrameRate;
+    }
+
+    public boolean isCachedLoopEnabled() {
+        return mDrawable.isCachedLoopEnabled();
+    }
+
+    /**
+     * Cached-loop mode renders each wave phase once per progress percent and
+     * replays it from a {@link WaveFrameCache} shared with every view of the
+     * same size and wave modes. Progress is shown in whole percents.
+     */
+    public void setCachedLoopEnabled(boolean cachedLoop) {
+        mDrawable.setCachedLoopEnabled(cachedLoop);
+    }
 
-        mBorderRadii = new float[] {
-            topLeftCornerRadius, topLeftCornerRadius,
-            topRightCornerRadius, topRightCornerRadius,
-            bottomRightCornerRadius, bottomRightCornerRadius,
-            bottomLeftCornerRadius, bottomLeftCornerRadius
-        };
+    public int getCachedLoopFrameCount() {
+        return mDrawable.getCachedLoopFrameCount();
+    }
 
-        mRealProgress = 100 - progress;
-        mSecondWaveOffset = getWaveHeight() * 0.4f;
-        mThirdWaveOffset = getWaveHeight() * 0.6f;
+    /**
+     * @param frameCount number of phase frames rendered per wave cycle
+     */
+    public void setCachedLoopFrameCount(int frameCount) {
+        mDrawable.setCachedLoopFrameCount(frameCount);
+    }
 
-        calcRadii();
+    public WaveFrameCache getWaveFrameCache() {
+        return mDrawable.getWaveFrameCache();
+    }
 
-        invalidate();
+    public void setWaveFrameCache(WaveFrameCache frameCache) {
+        mDrawable.setWaveFrameCache(frameCache);
     }
 
-    private void calcRadii(){
-        float ltCr, rtCr, rbCr, lbCr;
-        ltCr = topLeftCornerRadius - borderWidth;
-        rtCr = topRightCornerRadius - borderWidth;
-        rbCr = bottomRightCornerRadius - borderWidth;
-        lbCr = bottomLeftCornerRadius - borderWidth;
-        mRadii = new float[]{
-                ltCr, ltCr,
-                rtCr, rtCr,
-                rbCr, rbCr,
-                lbCr, lbCr
-        };
-
-    }
-
-    private void calculatePath(){
-
-        mBorderRadii = new float[] {
-                topLeftCornerRadius, topLeftCornerRadius,
-                topRightCornerRadius, topRightCornerRadius,
-                bottomRightCornerRadius, bottomRightCornerRadius,
-                bottomLeftCornerRadius, bottomLeftCornerRadius
-        };
-
-        calcRadii();
-
-        float left, top, right, bottom;
-
-        if (borderWidth > 0) {
-            left = (borderWidth / 2) + getPaddingLeft();
-            top = (borderWidth / 2) + getPaddingTop();
-            right = getMeasuredWidth() - ((borderWidth / 2) + getPaddingRight());
-            bottom = getMeasuredHeight() - ((borderWidth / 2) + getPaddingBottom());
-            mBorderBounds.set(left, top, right, bottom);
-            left = (int) (left + (borderWidth / 2));
-            top = (int) (top + (borderWidth / 2));
-            right = (int) (right - (borderWidth / 2));
-            bottom = (int) (bottom - (borderWidth / 2));
-            mBounds.set(left, top, right, bottom);
-        } else {
-            left = 0;
-            top = 0;
-            right = getMeasuredWidth();
-            bottom = getMeasuredHeight();
-            mBounds.set(left, top, right, bottom);
-        }
+    public WaveBitmapPool getWaveBitmapPool() {
+        return mDrawable.getWaveBitmapPool();
     }
 
-    private float getWaveMultiple() {
-        switch (mWaveMultipleMode) {
-            case 1:
-                return WAVE_LENGTH_MULTIPLE_LARGE;
-            case 2:
-                return WAVE_LENGTH_MULTIPLE_MIDDLE;
-            case 3:
-                return WAVE_LENGTH_MULTIPLE_LITTLE;
-        }
-        return 0;
+    public void setWaveBitmapPool(WaveBitmapPool waveBitmapPool) {
+        mDrawable.setWaveBitmapPool(waveBitmapPool);
     }
 
-    private int getWaveHeight() {
-        switch (mWaveHeightMode) {
-            case 1:
-                return WAVE_HEIGHT_LARGE;
-            case 2:
-                return WAVE_HEIGHT_MIDDLE;
-            case 3:
-                return WAVE_HEIGHT_LITTLE;
-        }
-        return 0;
+    public List<WaveLayer> getWaveLayers() {
+        return mDrawable.getWaveLayers();
     }
 
-    private void getWaveOffset() {
-        float mWaveHz = 0.13f;
-        if (mFirstWaveOffset > Float.MAX_VALUE - 100) {
-            mFirstWaveOffset = 0;
-        } else {
-            mFirstWaveOffset += mWaveHz;
-        }
+    /**
+     * Replaces the three default waves. Layers are listed from front to
+     * back and all take the wave color with their own alpha.
+     *
+     * @param layers waves to draw, or null to restore the defaults
+     */
+    public void setWaveLayers(List<WaveLayer> layers) {
+        mDrawable.setWaveLayers(layers);
+    }
 
-        if (mSecondWaveOffset > Float.MAX_VALUE - 100) {
-            mSecondWaveOffset = 0;
-        } else {
-            mSecondWaveOffset += mWaveHz;
+    public boolean isAdaptiveQualityEnabled() {
+        return mDrawable.isAdaptiveQualityEnabled();
+    }
+
+    /**
+     * Adaptive quality samples the waves with a step derived from the view
+     * width and wave length and joins them with curves, and draws fewer
+     * background layers while drawing takes longer than
+     * {@link #getAdaptiveQualityBudgetNanos()}. Has no effect in cached-loop
+     * mode.
+     */
+    public void setAdaptiveQualityEnabled(boolean adaptiveQuality) {
+        mDrawable.setAdaptiveQualityEnabled(adaptiveQuality);
+    }
+
+    public long getAdaptiveQualityBudgetNanos() {
+        return mDrawable.getAdaptiveQualityBudgetNanos();
+    }
+
+    /**
+     * @param budgetNanos draw time per frame this view may use
+     */
+    public void setAdaptiveQualityBudgetNanos(long budgetNanos) {
+        mDrawable.setAdaptiveQualityBudgetNanos(budgetNanos);
+    }
+
+    public long getIdleTimeout() {
+        return mIdleTimeout;
+    }
+
+    /**
+     * Power-saving idle mode. Once progress has not changed for
+     * {@code idleTimeout} milliseconds the waves drop to
+     * {@link #getIdleFrameRate()}, or stop if it is 0. The next progress
+     * change brings the full frame rate back at once.
+     *
+     * @param idleTimeout quiet period in milliseconds, 0 to never idle
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("Idle timeout must not be negative: " + idleTimeout);
         }
+        this.mIdleTimeout = idleTimeout;
+        mLastProgressChangeNanos = System.nanoTime();
+        updateAnimationState();
+    }
 
-        if (mThirdWaveOffset > Float.MAX_VALUE - 100) {
-            mThirdWaveOffset = 0;
-        } else {
-            mThirdWaveOffset += mWaveHz;
+    public int getIdleFrameRate() {
+        return mIdleFrameRate;
+    }
+
+    /**
+     * @param idleFrameRate frame rate while idle, 0 to freeze the waves
+     */
+    public void setIdleFrameRate(int idleFrameRate) {
+        if (idleFrameRate < 0) {
+            throw new IllegalArgumentException("Frame rate must not be negative: " + idleFrameRate);
         }
+        this.mIdleFrameRate = idleFrameRate;
+        updateAnimationState();
+    }
+
+    /**
+     * True while the idle timeout has passed without a progress change.
+     */
+    public boolean isIdle() {
+        return isIdle(System.nanoTime());
+    }
+
+    /**
+     * Starts a set of changes that is applied at once by
+     * {@link Editor#apply()}: the view is invalidated once and laid out at
+     * most once, for restyling many gauges without a relayout per setter.
+     * <pre>
+     * view.edit().viewType(WaveProgressView.VIEW_TYPE_CIRCLE).borderWidth(2)
+     *         .firstWaveColor(color).apply();
+     * </pre>
+     */
+    public Editor edit() {
+        return new Editor();
     }
 
-    private Bitmap generateWaveBitmap(){
-        Bitmap bitmap = Bitmap.createBitmap((int) mBounds.width(), (int) mBounds.height(), Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
+    public WaveFrameMetrics getFrameMetrics() {
+        return mDrawable.getFrameMetrics();
+    }
 
-        mFirstWave.reset();
-        mSecondWave.reset();
-        mThirdWave.reset();
+    /**
+     * Attaches frame statistics and systrace sections to this view.
+     * Pass null to turn them off.
+     */
+    public void setFrameMetrics(WaveFrameMetrics metrics) {
+        mDrawable.setFrameMetrics(metrics);
+    }
 
-        float width = mBounds.width();
-        float height = mBounds.height();
-        float realHeight = height / 100 * mRealProgress;
-        float y;
-        float x = 0;
-        float mMaxRight = getRight() + X_SPACE;
+    private void init(Context context, AttributeSet attrs, int defStyleAttr){
+        // The view paces the frames itself, the drawable only renders them
+        mDrawable.setSelfTicking(false);
+        mDrawable.setCallback(this);
 
-        float mWaveLength = width * getWaveMultiple();
-        double omega = PI2 / mWaveLength;
+        TypedArray a = context.obtainStyledAttributes(attrs,
+                R.styleable.WaveProgressView, defStyleAttr, 0);
+        if(a != null){
+            mDrawable.readAttributes(a);
+            mScrollAware = a.getBoolean(R.styleable.WaveProgressView_wpv_scroll_aware, false);
+            mIdleTimeout = a.getInt(R.styleable.WaveProgressView_wpv_idle_timeout, 0);
+            mIdleFrameRate = a.getInt(R.styleable.WaveProgressView_wpv_idle_frame_rate,
+                    DEFAULT_IDLE_FRAME_RATE);
 
-        getWaveOffset();
+            a.recycle();
 
-        // Основная волна
-        mFirstWave.moveTo(0, height);
-        mFirstWave.lineTo(0, realHeight);
-        for (float xf = 0; xf <= mMaxRight; xf += X_SPACE) {
-            y = (float) (getWaveHeight() * Math.sin(omega * xf + mFirstWaveOffset) + getWaveHeight());
-            mFirstWave.lineTo(xf, realHeight + y);
-            x = xf;
+            mDrawable.setBackgroundDrawable(getBackground());
+            setBackgroundResource(0);
         }
-        mFirstWave.lineTo(x, height);
-        mFirstWave.lineTo(0, height);
 
-        // Вторая волна
-        mSecondWave.moveTo(0, height);
-        mSecondWave.lineTo(0, realHeight);
-        for (float xf = 0; xf <= mMaxRight; xf += X_SPACE) {
-            y = (float) (getWaveHeight() * Math.sin(omega * xf + mSecondWaveOffset) + getWaveHeight());
-            mSecondWave.lineTo(xf, realHeight + y);
-            x = xf;
+        invalidate();
+    }
+
+    /**
+     * Moves the waves and the progress animation to the given frame time.
+     */
+    void advanceFrame(long frameTimeNanos) {
+        mDrawable.advance(frameTimeNanos, mAnimationEnabled
+                && mScrollVisibility == SCROLL_VISIBILITY_FULL);
+    }
+
+    /**
+     * Brings layout, static layer and wave geometry up to date for the next
+     * frame. Allocates nothing unless a size or attribute changed.
+     */
+    void prepareFrame() {
+        updateBounds();
+        mDrawable.prepareFrame();
+    }
+
+    private void updateBounds() {
+        mDrawable.setBounds(0, 0, getMeasuredWidth(), getMeasuredHeight());
+        mDrawable.setContentPadding(getPaddingLeft(), getPaddingTop(),
+                getPaddingRight(), getPaddingBottom());
+    }
+
+    Bitmap getWaveBitmap() {
+        return mDrawable.getWaveBitmap();
+    }
+
+    /**
+     * Subscription to the shared {@link WaveTicker}. Invalidates the view at
+     * most {@link #getTargetFrameRate()} times a second.
+     */
+    private class FrameLoop implements WaveTicker.Listener {
+
+        private final FramePacer mPacer = new FramePacer();
+        private boolean mRunning;
+
+        void start() {
+            if (mRunning) {
+                return;
+            }
+            mRunning = true;
+            mPacer.reset();
+            mDrawable.resetFrameTime();
+            WaveTicker.getInstance().add(this);
         }
-        mSecondWave.lineTo(x, height);
-        mSecondWave.lineTo(0, height);
 
-        // Третья волна
-        mThirdWave.moveTo(0, height);
-        mThirdWave.lineTo(0, realHeight);
-        for (float xf = 0; xf <= mMaxRight; xf += X_SPACE) {
-            y = (float) (getWaveHeight() * Math.sin(omega * xf + mThirdWaveOffset) + getWaveHeight());
-            mThirdWave.lineTo(xf, realHeight + y);
-            x = xf;
+        void stop() {
+            if (!mRunning) {
+                return;
+            }
+            mRunning = false;
+            WaveTicker.getInstance().remove(this);
         }
-        mThirdWave.lineTo(x, height);
-        mThirdWave.lineTo(0, height);
 
-        // Отрисовка третьей волны
-        mThirdWavePaint.setColor(firstWaveColor);
-        mThirdWavePaint.setAlpha(THIRD_WAVE_ALPHA);
-        canvas.drawPath(mThirdWave, mThirdWavePaint);
+        boolean isRunning() {
+            return mRunning;
+        }
 
-        // Отрисовка второй волны
-        mSecondWavePaint.setColor(firstWaveColor);
-        mSecondWavePaint.setAlpha(SECOND_WAVE_ALPHA);
-        canvas.drawPath(mSecondWave, mSecondWavePaint);
+        @Override
+        public void onFrame(long frameTimeNanos) {
+            if (!mRunning) {
+                return;
+            }
+            if (!canAnimate()) {
+                stop();
+                return;
+            }
+            int frameRate = getFrameRate(frameTimeNanos);
+            if (frameRate <= 0) {
+                // Paused: resume from the same phase instead of jumping ahead
+                mPacer.reset();
+                mDrawable.resetFrameTime();
+                return;
+            }
+            if (mPacer.shouldDraw(frameTimeNanos, frameRate)) {
+                advanceFrame(frameTimeNanos);
+                // Only the wave band changed since the last frame
+                mDrawable.invalidateWaveBand();
+            }
+        }
+    }
 
-        // Отрисовка основной волны
-        mFirstWavePaint.setColor(firstWaveColor);
-        mFirstWavePaint.setAlpha(FIRST_WAVE_ALPHA);
-        canvas.drawPath(mFirstWave, mFirstWavePaint);
+    /**
+     * Starts the wave animation. It only ticks while the view is attached,
+     * shown and has a non-empty size.
+     */
+    public void start() {
+        mAnimationEnabled = true;
+        mLastProgressChangeNanos = System.nanoTime();
+        updateAnimationState();
+    }
 
-        return bitmap;
+    /**
+     * Stops the wave animation. The current frame stays on screen.
+     */
+    public void stop() {
+        mAnimationEnabled = false;
+        updateAnimationState();
     }
 
-    private class RefreshProgressRunnable implements Runnable {
-        public void run() {
-            synchronized (WaveProgressView.this) {
-                long start = System.currentTimeMillis();
+    public boolean isAnimating() {
+        return mFrameLoop.isRunning();
+    }
 
-                invalidate();
+    public int getTargetFrameRate() {
+        return mTargetFrameRate;
+    }
 
-                long gap = 16 - (System.currentTimeMillis() - start);
-                postDelayed(this, gap < 0 ? 0 : gap);
-            }
+    public void setTargetFrameRate(int targetFrameRate) {
+        if (targetFrameRate <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + targetFrameRate);
         }
+        this.mTargetFrameRate = targetFrameRate;
     }
 
-    private int px2dp(float px) {
-        final float scale = getResources().getDisplayMetrics().density;
-        return  (int)(px / scale);
+    private boolean canAnimate() {
+        return (mDrawable.isProgressAnimating() || mAnimationEnabled && canMoveWaves()) && mAttached
+                && getWindowVisibility() == View.VISIBLE && isShown()
+                && getWidth() > 0 && getHeight() > 0
+                && getAlpha() > 0
+                && mScrollVisibility != SCROLL_VISIBILITY_HIDDEN;
     }
 
-    private float dp2px(float dp) {
-        final float scale = getResources().getDisplayMetrics().density;
-        return  dp * scale + 0.5f;
+    private boolean canMoveWaves() {
+        // At 0 percent the waves are out of sight; a progress change restarts.
+        // Clipped rows of a scroll-aware list only move to show progress.
+        return mDrawable.getDurationScale() > 0 && mDrawable.hasWaveBand()
+                && mScrollVisibility == SCROLL_VISIBILITY_FULL
+                && (mIdleFrameRate > 0 || !isIdle(System.nanoTime()));
+    }
+
+    private boolean isIdle(long timeNanos) {
+        return mIdleTimeout > 0 && !mDrawable.isProgressAnimating()
+                && timeNanos - mLastProgressChangeNanos >= mIdleTimeout * 1000000L;
     }
 
-    private Bitmap getBitmapFromDrawable(Drawable drawable) {
-        if (drawable == null) {
-            return null;
+    private int getFrameRate(long frameTimeNanos) {
+        int frameRate = mTargetFrameRate;
+        if (mScrollAware && frameTimeNanos - mLastScrollTimeNanos < SCROLL_IDLE_NANOS) {
+            if (mScrollVisibility != SCROLL_VISIBILITY_FULL) {
+                return 0;
+            }
+            frameRate = mScrollFrameRate;
         }
+        if (isIdle(frameTimeNanos)) {
+            frameRate = Math.min(frameRate, mIdleFrameRate);
+        }
+        return frameRate;
+    }
 
-        if (drawable instanceof BitmapDrawable) {
-            return ((BitmapDrawable) drawable).getBitmap();
+    /**
+     * Picks up the animator duration scale from developer options or the
+     * accessibility "remove animations" setting, which sets it to 0.
+     */
+    private void updateDurationScale() {
+        float durationScale = getSystemDurationScale(getContext());
+        if (durationScale != mDrawable.getDurationScale()) {
+            mDrawable.setDurationScale(durationScale);
+            updateAnimationState();
+            invalidate();
         }
+    }
 
-        try {
-            Bitmap bitmap;
+    @SuppressWarnings("deprecation")
+    static float getSystemDurationScale(Context context) {
+        ContentResolver resolver = context.getContentResolver();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return Settings.Global.getFloat(resolver, Settings.Global.ANIMATOR_DURATION_SCALE, 1);
+        }
+        return Settings.System.getFloat(resolver, Settings.System.ANIMATOR_DURATION_SCALE, 1);
+    }
 
-            if (drawable instanceof ColorDrawable) {
-                bitmap = Bitmap.createBitmap(2, 2, Bitmap.Config.ARGB_8888);
-            } else {
-                bitmap = Bitmap.createBitmap(drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
+    private void updateScrollVisibility() {
+        int visibility;
+        if (!getGlobalVisibleRect(mVisibleRect)) {
+            visibility = SCROLL_VISIBILITY_HIDDEN;
+        } else if (mVisibleRect.width() < getWidth() || mVisibleRect.height() < getHeight()) {
+            visibility = SCROLL_VISIBILITY_PARTIAL;
+        } else {
+            visibility = SCROLL_VISIBILITY_FULL;
+        }
+        if (visibility != mScrollVisibility) {
+            mScrollVisibility = visibility;
+            updateAnimationState();
+        }
+    }
+
+    private void updateAnimationState() {
+        if (mFrameLoop == null) {
+            // Called from the View constructor before fields are initialized
+            return;
+        }
+        if (canAnimate()) {
+            mFrameLoop.start();
+        } else {
+            mFrameLoop.stop();
+            if (mDrawable.isProgressAnimating()) {
+                mDrawable.finishProgressAnimation();
+                invalidate();
             }
+        }
+    }
+
+    private static boolean isSquare(int viewType) {
+        return viewType == VIEW_TYPE_CIRCLE || viewType == VIEW_TYPE_SQUARE;
+    }
 
-            Canvas canvas = new Canvas(bitmap);
-            drawable.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-            drawable.draw(canvas);
-            return bitmap;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+    private void invalidateContent() {
+        if (mBatching) {
+            mInvalidatePending = true;
+        } else {
+            invalidate();
         }
     }
 
+    private int px2dp(float px) {
+        return px2dp(getResources(), px);
+    }
+
+    private float dp2px(float dp) {
+        return dp2px(getResources(), dp);
+    }
+
+    /**
+     * Conversions shared by all gauge views, so the same dp attribute gives
+     * the same pixels everywhere.
+     */
+    static int px2dp(Resources resources, float px) {
+        final float scale = resources.getDisplayMetrics().density;
+        return  (int)(px / scale);
+    }
+
+    static float dp2px(Resources resources, float dp) {
+        final float scale = resources.getDisplayMetrics().density;
+        return  dp * scale + 0.5f;
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
 
-        calculatePath();
-
-        // Background
-        if(backgroundDrawable != null) {
-            mBorder.reset();
-            Bitmap background = getBitmapFromDrawable(backgroundDrawable);
-            BitmapShader mBackShader = new BitmapShader(background, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-            mWavePaint.setStyle(Paint.Style.FILL);
-            mWavePaint.setShader(mBackShader);
-            if (viewType == VIEW_TYPE_RECTANGLE || viewType == VIEW_TYPE_SQUARE) {
-                mBorder.addRoundRect(mBorderBounds, mRadii, Path.Direction.CW);
-            } else {
-                mBorder.addOval(mBorderBounds, Path.Direction.CW);
-            }
-            canvas.drawPath(mBorder, mWavePaint);
+        if (!mFrameLoop.isRunning()) {
+            updateAnimationState();
         }
 
-        // Wave
-        mBorder.reset();
-        Bitmap wave = generateWaveBitmap();
-        BitmapShader mShader = new BitmapShader(wave, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-        mWavePaint.setStyle(Paint.Style.FILL);
-        mWavePaint.setShader(mShader);
-        if(viewType == VIEW_TYPE_RECTANGLE || viewType == VIEW_TYPE_SQUARE) {
-            mBorder.addRoundRect(mBounds, mRadii, Path.Direction.CW);
-        } else {
-            mBorder.addOval(mBounds, Path.Direction.CW);
-        }
-        canvas.drawPath(mBorder, mWavePaint);
+        updateBounds();
+        mDrawable.draw(canvas);
+    }
 
-        // Border
-        if(borderWidth > 0) {
-            mBorder.reset();
-            if(viewType == VIEW_TYPE_RECTANGLE || viewType == VIEW_TYPE_SQUARE) {
-                mBorder.addRoundRect(mBorderBounds, mBorderRadii, Path.Direction.CW);
-            } else {
-                mBorder.addOval(mBorderBounds, Path.Direction.CW);
-            }
-            mBorderPaint.setColor(borderColor);
-            mBorderPaint.setStyle(Paint.Style.STROKE);
-            mBorderPaint.setStrokeWidth(borderWidth);
-            canvas.drawPath(mBorder, mBorderPaint);
+    @Override
+    public void invalidateDrawable(Drawable who) {
+        if (who == mDrawable && mBatching) {
+            mInvalidatePending = true;
+            return;
         }
+        super.invalidateDrawable(who);
+    }
 
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return who == mDrawable || super.verifyDrawable(who);
     }
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        if(viewType == VIEW_TYPE_CIRCLE || viewType == VIEW_TYPE_SQUARE) {
+        if(isSquare(mDrawable.getViewType())) {
             int size = Math.min(getMeasuredWidth(), getMeasuredHeight());
             setMeasuredDimension(size, size);
         }
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        if (mReleaseHandler != null) {
+            mReleaseHandler.removeCallbacks(mReleaseBuffers);
+        }
+        mLastProgressChangeNanos = System.nanoTime();
+        // Posts from other threads before attach may have been dropped
+        mPendingProgressPosted.set(false);
+        applyPendingProgress();
+        updateDurationScale();
+        if (mScrollAware) {
+            getViewTreeObserver().addOnScrollChangedListener(mScrollListener);
+            mScrollVisibility = SCROLL_VISIBILITY_FULL;
+        }
+        updateAnimationState();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mAttached = false;
+        updateAnimationState();
+        if (mScrollAware) {
+            // Recycled rows are usually attached again shortly; keep the
+            // caches until then, but not for a view that is gone for good
+            getViewTreeObserver().removeOnScrollChangedListener(mScrollListener);
+            if (mReleaseHandler == null) {
+                mReleaseHandler = new Handler(Looper.getMainLooper());
+            }
+            mReleaseHandler.postDelayed(mReleaseBuffers, DETACHED_RELEASE_DELAY);
+            return;
+        }
+        mDrawable.release();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // Drawable invalidation covers the drawable bounds
+        updateBounds();
+        updateAnimationState();
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        if (mScrollAware && mAttached) {
+            updateScrollVisibility();
+        }
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAnimationState();
+    }
+
     @Override
     protected void onWindowVisibilityChanged(int visibility) {
         super.onWindowVisibilityChanged(visibility);
-        if (View.GONE == visibility) {
-            removeCallbacks(mRefreshProgressRunnable);
-        } else {
-            removeCallbacks(mRefreshProgressRunnable);
-            mRefreshProgressRunnable = new RefreshProgressRunnable();
-            post(mRefreshProgressRunnable);
+        updateAnimationState();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        if (hasWindowFocus) {
+            // The scale may have changed while another window was in front
+            updateDurationScale();
+        }
+        updateAnimationState();
+    }
+
+    /**
+     * Collects attribute changes for {@link #edit()}. Only the attributes
+     * that were set are touched; sizes are in dp like the view setters.
+     * Must be applied on the main thread.
+     */
+    public final class Editor {
+
+        private final static int VIEW_TYPE = 1;
+        private final static int BORDER_WIDTH = 1 << 1;
+        private final static int BORDER_COLOR = 1 << 2;
+        private final static int ALL_CORNER_RADIUS = 1 << 3;
+        private final static int TOP_LEFT_CORNER_RADIUS = 1 << 4;
+        private final static int TOP_RIGHT_CORNER_RADIUS = 1 << 5;
+        private final static int BOTTOM_LEFT_CORNER_RADIUS = 1 << 6;
+        private final static int BOTTOM_RIGHT_CORNER_RADIUS = 1 << 7;
+        private final static int FIRST_WAVE_COLOR = 1 << 8;
+        private final static int WAVE_HEIGHT_MODE = 1 << 9;
+        private final static int WAVE_MULTIPLE_MODE = 1 << 10;
+        private final static int WAVE_LAYERS = 1 << 11;
+        private final static int RENDER_MODE = 1 << 12;
+        private final static int PROGRESS = 1 << 13;
+
+        private int mChanges;
+        private int mViewType;
+        private float mBorderWidth;
+        private int mBorderColor;
+        private float mAllCornerRadius;
+        private float mTopLeftCornerRadius;
+        private float mTopRightCornerRadius;
+        private float mBottomLeftCornerRadius;
+        private float mBottomRightCornerRadius;
+        private int mFirstWaveColor;
+        private int mWaveHeightMode;
+        private int mWaveMultipleMode;
+        private List<WaveLayer> mWaveLayers;
+        private int mRenderMode;
+        private float mProgress;
+        private boolean mAnimateProgress;
+
+        private Editor() {
+        }
+
+        public Editor viewType(int viewType) {
+            mViewType = viewType;
+            mChanges |= VIEW_TYPE;
+            return this;
+        }
+
+        public Editor borderWidth(float borderWidth) {
+            mBorderWidth = borderWidth;
+            mChanges |= BORDER_WIDTH;
+            return this;
+        }
+
+        public Editor borderColor(int borderColor) {
+            mBorderColor = borderColor;
+            mChanges |= BORDER_COLOR;
+            return this;
+        }
+
+        /**
+         * Applied before the single corner radii of the same editor.
+         */
+        public Editor allCornerRadius(float allCornerRadius) {
+            mAllCornerRadius = allCornerRadius;
+            mChanges |= ALL_CORNER_RADIUS;
+            return this;
+        }
+
+        public Editor topLeftCornerRadius(float topLeftCornerRadius) {
+            mTopLeftCornerRadius = topLeftCornerRadius;
+            mChanges |= TOP_LEFT_CORNER_RADIUS;
+            return this;
+        }
+
+        public Editor topRightCornerRadius(float topRightCornerRadius) {
+            mTopRightCornerRadius = topRightCornerRadius;
+            mChanges |= TOP_RIGHT_CORNER_RADIUS;
+            return this;
+        }
+
+        public Editor bottomLeftCornerRadius(float bottomLeftCornerRadius) {
+            mBottomLeftCornerRadius = bottomLeftCornerRadius;
+            mChanges |= BOTTOM_LEFT_CORNER_RADIUS;
+            return this;
+        }
+
+        public Editor bottomRightCornerRadius(float bottomRightCornerRadius) {
+            mBottomRightCornerRadius = bottomRightCornerRadius;
+            mChanges |= BOTTOM_RIGHT_CORNER_RADIUS;
+            return this;
+        }
+
+        public Editor firstWaveColor(int firstWaveColor) {
+            mFirstWaveColor = firstWaveColor;
+            mChanges |= FIRST_WAVE_COLOR;
+            return this;
+        }
+
+        public Editor waveHeightMode(int waveHeightMode) {
+            mWaveHeightMode = waveHeightMode;
+            mChanges |= WAVE_HEIGHT_MODE;
+            return this;
+        }
+
+        public Editor waveMultipleMode(int waveMultipleMode) {
+            mWaveMultipleMode = waveMultipleMode;
+            mChanges |= WAVE_MULTIPLE_MODE;
+            return this;
+        }
+
+        /**
+         * @see WaveProgressView#setWaveLayers(List)
+         */
+        public Editor waveLayers(List<WaveLayer> layers) {
+            mWaveLayers = layers;
+            mChanges |= WAVE_LAYERS;
+            return this;
+        }
+
+        public Editor renderMode(int renderMode) {
+            mRenderMode = renderMode;
+            mChanges |= RENDER_MODE;
+            return this;
+        }
+
+        public Editor progress(float progress) {
+            return progress(progress, false);
+        }
+
+        public Editor progress(float progress, boolean animate) {
+            mProgress = progress;
+            mAnimateProgress = animate;
+            mChanges |= PROGRESS;
+            return this;
+        }
+
+        /**
+         * Applies the collected changes, then invalidates the view once and
+         * requests a layout only if the measured size can change. Unchanged
+         * values leave the cached layers alone. The editor can be applied
+         * again.
+         */
+        public void apply() {
+            int changes = mChanges;
+            mBatching = true;
+            try {
+                if ((changes & VIEW_TYPE) != 0) {
+                    setViewType(mViewType);
+                }
+                if ((changes & RENDER_MODE) != 0) {
+                    setRenderMode(mRenderMode);
+                }
+                if ((changes & BORDER_WIDTH) != 0) {
+                    setBorderWidth(mBorderWidth);
+                }
+                if ((changes & BORDER_COLOR) != 0) {
+                    setBorderColor(mBorderColor);
+                }
+                if ((changes & ALL_CORNER_RADIUS) != 0) {
+                    setAllCornerRadius(mAllCornerRadius);
+                }
+                if ((changes & TOP_LEFT_CORNER_RADIUS) != 0) {
+                    setTopLeftCornerRadius(mTopLeftCornerRadius);
+                }
+                if ((changes & TOP_RIGHT_CORNER_RADIUS) != 0) {
+                    setTopRightCornerRadius(mTopRightCornerRadius);
+                }
+                if ((changes & BOTTOM_LEFT_CORNER_RADIUS) != 0) {
+                    setBottomLeftCornerRadius(mBottomLeftCornerRadius);
+                }
+                if ((changes & BOTTOM_RIGHT_CORNER_RADIUS) != 0) {
+                    setBottomRightCornerRadius(mBottomRightCornerRadius);
+                }
+                if ((changes & WAVE_LAYERS) != 0) {
+                    setWaveLayers(mWaveLayers);
+                }
+                if ((changes & WAVE_HEIGHT_MODE) != 0) {
+                    setWaveHeightMode(mWaveHeightMode);
+                }
+                if ((changes & WAVE_MULTIPLE_MODE) != 0) {
+                    setWaveMultipleMode(mWaveMultipleMode);
+                }
+                if ((changes & FIRST_WAVE_COLOR) != 0) {
+                    setFirstWaveColor(mFirstWaveColor);
+                }
+                if ((changes & PROGRESS) != 0) {
+                    setProgress(mProgress, mAnimateProgress);
+                }
+            } finally {
+                mBatching = false;
+                boolean layout = mLayoutPending;
+                boolean invalidate = mInvalidatePending;
+                mLayoutPending = false;
+                mInvalidatePending = false;
+                if (layout) {
+                    requestLayout();
+                }
+                if (invalidate || layout) {
+                    invalidate();
+                }
+            }
         }
     }
 }
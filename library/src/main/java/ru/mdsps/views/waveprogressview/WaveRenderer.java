@@ -0,0 +1,1185 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.animation.TimeInterpolator;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.view.animation.AccelerateDecelerateInterpolator;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import static ru.mdsps.views.waveprogressview.WaveProgressView.RENDER_MODE_BATCHED;
+import static ru.mdsps.views.waveprogressview.WaveProgressView.RENDER_MODE_BITMAP;
+import static ru.mdsps.views.waveprogressview.WaveProgressView.RENDER_MODE_DIRECT;
+import static ru.mdsps.views.waveprogressview.WaveProgressView.VIEW_TYPE_RECTANGLE;
+import static ru.mdsps.views.waveprogressview.WaveProgressView.VIEW_TYPE_SQUARE;
+
+/**
+ * Draws a wave progress gauge onto any canvas. Holds the attributes, the
+ * cached geometry and buffers, the wave phase and the progress animation,
+ * independently of the widget that hosts it. Not thread-safe.
+ */
+
+final class WaveRenderer {
+
+    // Path clips are anti-aliased on both canvas types since Android P
+    private final static int ANTI_ALIASED_CLIP_MIN_SDK = 28;
+    // Hardware canvases draw vertex meshes since Android Q
+    private final static int HARDWARE_VERTICES_MIN_SDK = 29;
+    // The layers share one color, so buffers only keep the coverage and the
+    // color is applied when they are composited
+    private final static Bitmap.Config WAVE_MASK_CONFIG = Bitmap.Config.ALPHA_8;
+
+    final static float DEFAULT_WAVE_SPEED = 1.25f;
+    final static long DEFAULT_PROGRESS_DURATION = 500;
+    final static int DEFAULT_CACHED_LOOP_FRAMES = 48;
+
+    private final static float X_SPACE = 20;
+    private final static float MIN_ADAPTIVE_STEP = 4;
+    private final static double PI2 = 2 * Math.PI;
+    // Anti-aliased wave edges reach a pixel past the crests and troughs
+    private final static int WAVE_BAND_MARGIN = 2;
+
+    private float topLeftCornerRadius = 0f;
+    private float topRightCornerRadius = 0f;
+    private float bottomLeftCornerRadius = 0f;
+    private float bottomRightCornerRadius = 0f;
+    private float allCornerRadius = 0f;
+    private float borderWidth = 0f;
+    private float progress = 50f;
+
+    private int viewType = VIEW_TYPE_RECTANGLE;
+    private int firstWaveColor = Color.BLUE;
+    private int borderColor = Color.BLACK;
+
+    private Drawable backgroundDrawable;
+
+    private WaveModel mModel = new WaveModel();
+    private WaveGeometry[] mLayerGeometries = new WaveGeometry[0];
+    private WaveGeometryCache mGeometryCache;
+    private Path mBorder = new Path();
+    private Path mBackgroundPath = new Path();
+    private Path mClipPath = new Path();
+
+    private Paint mWavePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private Paint[] mLayerPaints = new Paint[0];
+    private Paint mMeshPaint = new Paint();
+    private Paint mMaskPaint = new Paint();
+    private Paint mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private Paint mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private int mWidth;
+    private int mHeight;
+    private int mPaddingLeft;
+    private int mPaddingTop;
+    private int mPaddingRight;
+    private int mPaddingBottom;
+
+    private RectF mBounds = new RectF();
+    private RectF mBorderBounds = new RectF();
+    private float mContentWidth;
+    private float mContentHeight;
+    private Rect mWaveBand = new Rect();
+    private Rect mDrawnWaveBand = new Rect();
+
+    private final float[] mRadii = new float[] { 0, 0, 0, 0, 0, 0, 0, 0 };
+    private final float[] mBorderRadii = new float[] { 0, 0, 0, 0, 0, 0, 0, 0 };
+
+    private Bitmap mBackgroundBitmap;
+    private boolean mHasBackground;
+    private boolean mLayoutDirty = true;
+    private boolean mStaticLayerDirty = true;
+
+    private Bitmap mWaveBitmap;
+    private Canvas mWaveCanvas = new Canvas();
+    private BitmapShader mWaveShader;
+    private Matrix mWaveShaderMatrix = new Matrix();
+    private WaveBitmapPool mWaveBitmapPool;
+    private int mRenderMode = RENDER_MODE_BITMAP;
+
+    private boolean mCachedLoop;
+    private int mCachedLoopFrames = DEFAULT_CACHED_LOOP_FRAMES;
+    private WaveFrameCache mFrameCache;
+    private WaveFrameCache.Key mFrameKey = new WaveFrameCache.Key();
+    private Canvas mFrameCanvas = new Canvas();
+
+    private float[] mCrest = new float[0];
+    private float[] mMeshVertices = new float[0];
+    private int[] mMeshColors = new int[0];
+    private int mLayersHash;
+
+    private WaveFrameMetrics mMetrics;
+
+    private boolean mAdaptiveQuality;
+    private boolean mDirectRenderingSupported = Build.VERSION.SDK_INT >= ANTI_ALIASED_CLIP_MIN_SDK;
+    private WaveLevelOfDetail mLevelOfDetail = new WaveLevelOfDetail();
+
+    private float mProgressFrom;
+    private boolean mProgressAnimating;
+    private long mProgressStartTimeNanos;
+    private long mProgressDuration = DEFAULT_PROGRESS_DURATION;
+    private TimeInterpolator mProgressInterpolator = new AccelerateDecelerateInterpolator();
+
+    private float mWaveSpeed = DEFAULT_WAVE_SPEED;
+    private float mDurationScale = 1;
+
+    WaveRenderer() {
+        updateLayers();
+        mLevelOfDetail.reset(mModel.getLayerCount());
+    }
+
+    /**
+     * Reads the {@code wpv_*} attributes shared by all wave widgets.
+     */
+    void readAttributes(TypedArray a) {
+        viewType = a.getInt(R.styleable.WaveProgressView_wpv_type, VIEW_TYPE_RECTANGLE);
+        topLeftCornerRadius = a.getDimensionPixelSize(
+                R.styleable.WaveProgressView_wpv_top_left_corner_radius, 0);
+        topRightCornerRadius = a.getDimensionPixelSize(
+                R.styleable.WaveProgressView_wpv_top_right_corner_radius, 0);
+        bottomLeftCornerRadius = a.getDimensionPixelSize(
+                R.styleable.WaveProgressView_wpv_bottom_left_corner_radius, 0);
+        bottomRightCornerRadius = a.getDimensionPixelSize(
+                R.styleable.WaveProgressView_wpv_bottom_right_corner_radius, 0);
+        allCornerRadius = a.getDimensionPixelSize(
+                R.styleable.WaveProgressView_wpv_corner_radius, 0);
+        firstWaveColor = a.getColor(R.styleable.WaveProgressView_wpv_wave_color, Color.BLUE);
+        borderColor = a.getColor(R.styleable.WaveProgressView_wpv_border_color, Color.BLACK);
+        borderWidth = a.getDimensionPixelSize(
+                R.styleable.WaveProgressView_wpv_border_width, 0);
+        progress = a.getFloat(R.styleable.WaveProgressView_wpv_progress, 50f);
+        setWaveSpeed(a.getFloat(R.styleable.WaveProgressView_wpv_wave_speed, DEFAULT_WAVE_SPEED));
+        mModel.setLengthMode(a.getInt(R.styleable.WaveProgressView_wpv_wave_length, WaveModel.MODE_LARGE));
+        mModel.setHeightMode(a.getInt(R.styleable.WaveProgressView_wpv_wave_height, WaveModel.MODE_LARGE));
+        mRenderMode = a.getInt(R.styleable.WaveProgressView_wpv_render_mode, RENDER_MODE_BITMAP);
+        mAdaptiveQuality = a.getBoolean(R.styleable.WaveProgressView_wpv_adaptive_quality, false);
+
+        if(allCornerRadius > 0){
+            topLeftCornerRadius = allCornerRadius;
+            topRightCornerRadius = allCornerRadius;
+            bottomLeftCornerRadius = allCornerRadius;
+            bottomRightCornerRadius = allCornerRadius;
+        }
+
+        mModel.setProgress(progress);
+        updateLayers();
+        invalidateLayout();
+    }
+
+    float getAllCornerRadius() {
+        return allCornerRadius;
+    }
+
+    void setAllCornerRadius(float allCornerRadius) {
+        if (allCornerRadius == this.allCornerRadius && allCornerRadius == topLeftCornerRadius
+                && allCornerRadius == topRightCornerRadius && allCornerRadius == bottomLeftCornerRadius
+                && allCornerRadius == bottomRightCornerRadius) {
+            return;
+        }
+        this.allCornerRadius = allCornerRadius;
+        topLeftCornerRadius = allCornerRadius;
+        topRightCornerRadius = allCornerRadius;
+        bottomLeftCornerRadius = allCornerRadius;
+        bottomRightCornerRadius = allCornerRadius;
+        invalidateLayout();
+    }
+
+    int getBorderColor() {
+        return borderColor;
+    }
+
+    void setBorderColor(int borderColor) {
+        if (borderColor == this.borderColor) {
+            return;
+        }
+        this.borderColor = borderColor;
+        mStaticLayerDirty = true;
+    }
+
+    float getBorderWidth() {
+        return borderWidth;
+    }
+
+    void setBorderWidth(float borderWidth) {
+        if (borderWidth == this.borderWidth) {
+            return;
+        }
+        this.borderWidth = borderWidth;
+        invalidateLayout();
+    }
+
+    float getBottomLeftCornerRadius() {
+        return bottomLeftCornerRadius;
+    }
+
+    void setBottomLeftCornerRadius(float bottomLeftCornerRadius) {
+        if (bottomLeftCornerRadius == this.bottomLeftCornerRadius) {
+            return;
+        }
+        this.bottomLeftCornerRadius = bottomLeftCornerRadius;
+        invalidateLayout();
+    }
+
+    float getBottomRightCornerRadius() {
+        return bottomRightCornerRadius;
+    }
+
+    void setBottomRightCornerRadius(float bottomRightCornerRadius) {
+        if (bottomRightCornerRadius == this.bottomRightCornerRadius) {
+            return;
+        }
+        this.bottomRightCornerRadius = bottomRightCornerRadius;
+        invalidateLayout();
+    }
+
+    float getTopLeftCornerRadius() {
+        return topLeftCornerRadius;
+    }
+
+    void setTopLeftCornerRadius(float topLeftCornerRadius) {
+        if (topLeftCornerRadius == this.topLeftCornerRadius) {
+            return;
+        }
+        this.topLeftCornerRadius = topLeftCornerRadius;
+        invalidateLayout();
+    }
+
+    float getTopRightCornerRadius() {
+        return topRightCornerRadius;
+    }
+
+    void setTopRightCornerRadius(float topRightCornerRadius) {
+        if (topRightCornerRadius == this.topRightCornerRadius) {
+            return;
+        }
+        this.topRightCornerRadius = topRightCornerRadius;
+        invalidateLayout();
+    }
+
+    int getFirstWaveColor() {
+        return firstWaveColor;
+    }
+
+    void setFirstWaveColor(int firstWaveColor) {
+        if (firstWaveColor == this.firstWaveColor) {
+            return;
+        }
+        this.firstWaveColor = firstWaveColor;
+        updateLayers();
+    }
+
+    int getWaveHeightMode() {
+        return mModel.getHeightMode();
+    }
+
+    void setWaveHeightMode(int mWaveHeightMode) {
+        if (mWaveHeightMode == mModel.getHeightMode()) {
+            return;
+        }
+        mModel.setHeightMode(mWaveHeightMode);
+        updateLayers();
+    }
+
+    int getWaveMultipleMode() {
+        return mModel.getLengthMode();
+    }
+
+    void setWaveMultipleMode(int mWaveMultipleMode) {
+        if (mWaveMultipleMode == mModel.getLengthMode()) {
+            return;
+        }
+        mModel.setLengthMode(mWaveMultipleMode);
+    }
+
+    int getViewType() {
+        return viewType;
+    }
+
+    void setViewType(int viewType) {
+        if (viewType == this.viewType) {
+            return;
+        }
+        this.viewType = viewType;
+        invalidateLayout();
+    }
+
+    Drawable getBackgroundDrawable() {
+        return backgroundDrawable;
+    }
+
+    void setBackgroundDrawable(Drawable backgroundDrawable) {
+        this.backgroundDrawable = backgroundDrawable;
+        mStaticLayerDirty = true;
+    }
+
+    float getProgress() {
+        return progress;
+    }
+
+    void setProgress(float progress, boolean animate) {
+        this.progress = progress;
+        if (animate && mProgressDuration > 0 && mDurationScale > 0
+                && mModel.getProgress() != progress) {
+            mProgressFrom = mModel.getProgress();
+            mProgressStartTimeNanos = 0;
+            mProgressAnimating = true;
+        } else {
+            mProgressAnimating = false;
+            mModel.setProgress(progress);
+        }
+    }
+
+    boolean isProgressAnimating() {
+        return mProgressAnimating;
+    }
+
+    long getProgressAnimationDuration() {
+        return mProgressDuration;
+    }
+
+    void setProgressAnimationDuration(long duration) {
+        this.mProgressDuration = duration;
+    }
+
+    TimeInterpolator getProgressInterpolator() {
+        return mProgressInterpolator;
+    }
+
+    void setProgressInterpolator(TimeInterpolator interpolator) {
+        this.mProgressInterpolator = interpolator;
+    }
+
+    float getWaveSpeed() {
+        return mWaveSpeed;
+    }
+
+    void setWaveSpeed(float waveSpeed) {
+        this.mWaveSpeed = waveSpeed;
+        updateSpeed();
+    }
+
+    float getDurationScale() {
+        return mDurationScale;
+    }
+
+    /**
+     * Stretches the wave cycle and the progress animation like the system
+     * animator duration scale does. 0 keeps the waves still and makes
+     * progress changes jump.
+     */
+    void setDurationScale(float durationScale) {
+        if (durationScale < 0) {
+            throw new IllegalArgumentException("Duration scale must not be negative: " + durationScale);
+        }
+        this.mDurationScale = durationScale;
+        updateSpeed();
+        if (durationScale == 0 && mProgressAnimating) {
+            finishProgressAnimation();
+        }
+    }
+
+    private void updateSpeed() {
+        mModel.setSpeed(mDurationScale > 0 ? mWaveSpeed / mDurationScale : 0);
+    }
+
+    int getRenderMode() {
+        return mRenderMode;
+    }
+
+    void setRenderMode(int renderMode) {
+        if (renderMode != RENDER_MODE_BITMAP && renderMode != RENDER_MODE_DIRECT
+                && renderMode != RENDER_MODE_BATCHED) {
+            throw new IllegalArgumentException("Unknown render mode: " + renderMode);
+        }
+        this.mRenderMode = renderMode;
+    }
+
+    boolean isCachedLoopEnabled() {
+        return mCachedLoop;
+    }
+
+    void setCachedLoopEnabled(boolean cachedLoop) {
+        this.mCachedLoop = cachedLoop;
+    }
+
+    int getCachedLoopFrameCount() {
+        return mCachedLoopFrames;
+    }
+
+    void setCachedLoopFrameCount(int frameCount) {
+        if (frameCount <= 0) {
+            throw new IllegalArgumentException("Frame count must be positive: " + frameCount);
+        }
+        this.mCachedLoopFrames = frameCount;
+    }
+
+    WaveFrameCache getWaveFrameCache() {
+        return mFrameCache != null ? mFrameCache : WaveFrameCache.getDefault();
+    }
+
+    void setWaveFrameCache(WaveFrameCache frameCache) {
+        this.mFrameCache = frameCache;
+    }
+
+    boolean isAdaptiveQualityEnabled() {
+        return mAdaptiveQuality;
+    }
+
+    void setAdaptiveQualityEnabled(boolean adaptiveQuality) {
+        this.mAdaptiveQuality = adaptiveQuality;
+        mLevelOfDetail.reset(mModel.getLayerCount());
+    }
+
+    long getAdaptiveQualityBudgetNanos() {
+        return mLevelOfDetail.getBudgetNanos();
+    }
+
+    void setAdaptiveQualityBudgetNanos(long budgetNanos) {
+        mLevelOfDetail.setBudgetNanos(budgetNanos);
+    }
+
+    WaveLayer[] getWaveLayers() {
+        WaveLayer[] layers = new WaveLayer[mModel.getLayerCount()];
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = mModel.getLayer(i);
+        }
+        return layers;
+    }
+
+    /**
+     * @param layers waves from front to back, or null for the default three
+     */
+    void setWaveLayers(WaveLayer[] layers) {
+        mModel.setLayers(layers);
+        updateLayers();
+        mLevelOfDetail.reset(mModel.getLayerCount());
+    }
+
+    WaveFrameMetrics getFrameMetrics() {
+        return mMetrics;
+    }
+
+    void setFrameMetrics(WaveFrameMetrics metrics) {
+        this.mMetrics = metrics;
+    }
+
+    WaveBitmapPool getWaveBitmapPool() {
+        return mWaveBitmapPool;
+    }
+
+    void setWaveBitmapPool(WaveBitmapPool waveBitmapPool) {
+        releaseWaveBitmap();
+        this.mWaveBitmapPool = waveBitmapPool;
+    }
+
+    /**
+     * Takes over the attributes of another renderer, for a render thread that
+     * draws a private copy while the source is changed on the main thread.
+     * Unchanged values keep the cached layers, so copying every frame is
+     * cheap. A progress change is applied animated if it was set that way;
+     * the source's pending animation is consumed so it starts only once.
+     */
+    void copyAttributesFrom(WaveRenderer source) {
+        setBounds(source.mWidth, source.mHeight, source.mPaddingLeft, source.mPaddingTop,
+                source.mPaddingRight, source.mPaddingBottom);
+        setViewType(source.viewType);
+        allCornerRadius = source.allCornerRadius;
+        setTopLeftCornerRadius(source.topLeftCornerRadius);
+        setTopRightCornerRadius(source.topRightCornerRadius);
+        setBottomLeftCornerRadius(source.bottomLeftCornerRadius);
+        setBottomRightCornerRadius(source.bottomRightCornerRadius);
+        setBorderWidth(source.borderWidth);
+        setBorderColor(source.borderColor);
+        setFirstWaveColor(source.firstWaveColor);
+        setWaveMultipleMode(source.getWaveMultipleMode());
+        setWaveHeightMode(source.getWaveHeightMode());
+        if (source.mModel.hasCustomLayers() != mModel.hasCustomLayers()
+                || source.mLayersHash != mLayersHash) {
+            setWaveLayers(source.mModel.hasCustomLayers() ? source.getWaveLayers() : null);
+        }
+        if (source.backgroundDrawable != backgroundDrawable) {
+            setBackgroundDrawable(source.backgroundDrawable);
+        }
+
+        mWaveSpeed = source.mWaveSpeed;
+        if (source.mDurationScale != mDurationScale) {
+            setDurationScale(source.mDurationScale);
+        }
+        updateSpeed();
+        mProgressDuration = source.mProgressDuration;
+        mProgressInterpolator = source.mProgressInterpolator;
+        mRenderMode = source.mRenderMode;
+        mCachedLoop = source.mCachedLoop;
+        mCachedLoopFrames = source.mCachedLoopFrames;
+        mFrameCache = source.mFrameCache;
+        if (source.mWaveBitmapPool != mWaveBitmapPool) {
+            setWaveBitmapPool(source.mWaveBitmapPool);
+        }
+        if (source.mAdaptiveQuality != mAdaptiveQuality) {
+            setAdaptiveQualityEnabled(source.mAdaptiveQuality);
+        }
+        mLevelOfDetail.setBudgetNanos(source.mLevelOfDetail.getBudgetNanos());
+        mMetrics = source.mMetrics;
+
+        if (source.progress != progress || source.mProgressAnimating) {
+            setProgress(source.progress, source.mProgressAnimating);
+            source.finishProgressAnimation();
+        }
+    }
+
+    /**
+     * Takes the wave outlines from a cache shared with other renderers, or
+     * builds its own with null.
+     */
+    void setGeometryCache(WaveGeometryCache geometryCache) {
+        if (geometryCache == mGeometryCache) {
+            return;
+        }
+        mGeometryCache = geometryCache;
+        // Shared outlines must never be rebuilt in place
+        for (int i = 0; i < mLayerGeometries.length; i++) {
+            mLayerGeometries[i] = new WaveGeometry();
+        }
+    }
+
+    /**
+     * Adds the wave outlines this renderer currently draws with.
+     */
+    void collectGeometries(Collection<WaveGeometry> out) {
+        Collections.addAll(out, mLayerGeometries);
+    }
+
+    /**
+     * Sets the size of the drawing area and the padding inside it.
+     */
+    void setBounds(int width, int height, int paddingLeft, int paddingTop,
+                   int paddingRight, int paddingBottom) {
+        if (width == mWidth && height == mHeight
+                && paddingLeft == mPaddingLeft && paddingTop == mPaddingTop
+                && paddingRight == mPaddingRight && paddingBottom == mPaddingBottom) {
+            return;
+        }
+        mWidth = width;
+        mHeight = height;
+        mPaddingLeft = paddingLeft;
+        mPaddingTop = paddingTop;
+        mPaddingRight = paddingRight;
+        mPaddingBottom = paddingBottom;
+        mLayoutDirty = true;
+    }
+
+    /**
+     * Moves the waves and the progress animation to the given frame time.
+     * The phase depends only on elapsed time, so skipped frames do not slow
+     * the waves down.
+     *
+     * @param moveWaves false to keep the waves still while progress animates
+     */
+    void advance(long frameTimeNanos, boolean moveWaves) {
+        if (moveWaves && mDurationScale > 0) {
+            mModel.setTime(frameTimeNanos);
+        } else {
+            mModel.resetTime();
+        }
+
+        if (mProgressAnimating) {
+            if (mProgressStartTimeNanos == 0) {
+                mProgressStartTimeNanos = frameTimeNanos;
+            }
+            float fraction = (frameTimeNanos - mProgressStartTimeNanos)
+                    / (mProgressDuration * mDurationScale * 1000000f);
+            if (fraction >= 1) {
+                finishProgressAnimation();
+            } else {
+                float interpolated = mProgressInterpolator != null
+                        ? mProgressInterpolator.getInterpolation(fraction) : fraction;
+                mModel.setProgress(mProgressFrom + (progress - mProgressFrom) * interpolated);
+            }
+        }
+    }
+
+    /**
+     * Forgets the last frame time so the next frame does not move the waves
+     * by the time spent paused.
+     */
+    void resetFrameTime() {
+        mModel.resetTime();
+    }
+
+    void finishProgressAnimation() {
+        mProgressAnimating = false;
+        mModel.setProgress(progress);
+    }
+
+    /**
+     * Brings layout, static layer and wave geometry up to date for the next
+     * frame. Allocates nothing unless a size or attribute changed.
+     */
+    void prepareFrame() {
+        if (mLayoutDirty) {
+            calculatePath();
+        }
+        if (mStaticLayerDirty) {
+            buildStaticLayer();
+        }
+        mModel.setSize(mContentWidth, mContentHeight);
+        boolean adaptive = isAdaptive();
+        mModel.setStep(adaptive ? MIN_ADAPTIVE_STEP : X_SPACE);
+        for (int i = 0; i < mLayerGeometries.length; i++) {
+            if (mGeometryCache != null) {
+                if (!mLayerGeometries[i].matches(mModel, i, adaptive)) {
+                    mLayerGeometries[i] = mGeometryCache.obtain(mModel, i, adaptive);
+                }
+            } else if (mLayerGeometries[i].update(mModel, i, adaptive) && mMetrics != null) {
+                mMetrics.onGeometryRebuilt();
+            }
+        }
+    }
+
+    /**
+     * Area that changes while only the wave phase and progress move: the
+     * band from the highest crest to the lowest trough, joined with the band
+     * of the last drawn frame. Above it is background, below it solid fill.
+     *
+     * @param out receives the area in drawing coordinates
+     * @return false if nothing inside the shape moves, such as at 0 percent
+     */
+    boolean getWaveBand(Rect out) {
+        computeWaveBand(mWaveBand);
+        out.set(mWaveBand);
+        out.union(mDrawnWaveBand);
+        return !out.isEmpty();
+    }
+
+    /**
+     * True if moving the waves changes anything on screen at the current
+     * progress.
+     */
+    boolean hasWaveBand() {
+        computeWaveBand(mWaveBand);
+        return !mWaveBand.isEmpty();
+    }
+
+    private void computeWaveBand(Rect out) {
+        if (mLayoutDirty) {
+            calculatePath();
+        }
+        mModel.setSize(mContentWidth, mContentHeight);
+        float amplitude = 0;
+        for (int i = 0; i < mModel.getLayerCount(); i++) {
+            amplitude = Math.max(amplitude, mModel.getLayerAmplitude(i));
+        }
+        // Cached frames show whole percents
+        float level = mCachedLoop ? mModel.getLevel(Math.round(mModel.getProgress()))
+                : mModel.getLevel();
+        float top = Math.max(level, 0);
+        float bottom = Math.min(level + 2 * amplitude, mContentHeight);
+        if (amplitude <= 0 || top >= bottom || mContentWidth <= 0) {
+            out.setEmpty();
+            return;
+        }
+        out.set(0, (int) (mBounds.top + top) - WAVE_BAND_MARGIN,
+                mWidth, (int) Math.ceil(mBounds.top + bottom) + WAVE_BAND_MARGIN);
+    }
+
+    private boolean isBatched() {
+        return mRenderMode == RENDER_MODE_BATCHED && !mCachedLoop;
+    }
+
+    private boolean isAdaptive() {
+        // Cached frames are already cheap and shared between views
+        return mAdaptiveQuality && !mCachedLoop;
+    }
+
+    void draw(Canvas canvas) {
+        WaveFrameMetrics metrics = mMetrics;
+        boolean adaptive = isAdaptive();
+        long start = metrics != null || adaptive ? System.nanoTime() : 0;
+        if (metrics != null) {
+            metrics.beginSection(WaveFrameMetrics.SECTION_GEOMETRY);
+        }
+        prepareFrame();
+        if (metrics != null) {
+            metrics.endSection();
+            metrics.beginSection(WaveFrameMetrics.SECTION_COMPOSITE);
+        }
+
+        // Background
+        if (mHasBackground) {
+            canvas.drawPath(mBackgroundPath, mBackgroundPaint);
+        }
+
+        // Wave
+        if (mContentWidth > 0 && mContentHeight > 0) {
+            if (metrics != null) {
+                metrics.beginSection(WaveFrameMetrics.SECTION_WAVES);
+            }
+            Bitmap frame = mCachedLoop ? obtainCachedFrame() : null;
+            if (frame != null) {
+                if (metrics != null) {
+                    metrics.endSection();
+                }
+                drawCachedFrame(canvas, frame);
+            } else if (supportsDirectRendering() && (mRenderMode == RENDER_MODE_DIRECT
+                    || isBatched() && Build.VERSION.SDK_INT >= HARDWARE_VERTICES_MIN_SDK)) {
+                releaseWaveBitmap();
+                drawWavesDirect(canvas);
+                if (metrics != null) {
+                    metrics.endSection();
+                }
+            } else if (ensureWaveBitmap()) {
+                drawWaveBitmap();
+                if (metrics != null) {
+                    metrics.endSection();
+                }
+                canvas.drawPath(mClipPath, mWavePaint);
+            } else if (metrics != null) {
+                metrics.endSection();
+            }
+        }
+
+        // Border
+        if (borderWidth > 0) {
+            canvas.drawPath(mBorder, mBorderPaint);
+        }
+        computeWaveBand(mDrawnWaveBand);
+        if (metrics != null) {
+            metrics.endSection();
+        }
+
+        if (metrics != null || adaptive) {
+            long drawNanos = System.nanoTime() - start;
+            if (adaptive) {
+                mLevelOfDetail.onFrameDrawn(drawNanos);
+            }
+            if (metrics != null) {
+                metrics.onFrameDrawn(drawNanos);
+            }
+        }
+    }
+
+    /**
+     * Frees the wave and background buffers. They are rebuilt on the next draw.
+     */
+    void release() {
+        releaseWaveBitmap();
+        releaseBackgroundBitmap();
+        mStaticLayerDirty = true;
+    }
+
+    Bitmap getWaveBitmap() {
+        return mWaveBitmap;
+    }
+
+    private void calcRadii(){
+        float ltCr, rtCr, rbCr, lbCr;
+        ltCr = topLeftCornerRadius - borderWidth;
+        rtCr = topRightCornerRadius - borderWidth;
+        rbCr = bottomRightCornerRadius - borderWidth;
+        lbCr = bottomLeftCornerRadius - borderWidth;
+        setRadii(mRadii, ltCr, rtCr, rbCr, lbCr);
+        setRadii(mBorderRadii, topLeftCornerRadius, topRightCornerRadius,
+                bottomRightCornerRadius, bottomLeftCornerRadius);
+    }
+
+    private static void setRadii(float[] radii, float lt, float rt, float rb, float lb) {
+        radii[0] = lt;
+        radii[1] = lt;
+        radii[2] = rt;
+        radii[3] = rt;
+        radii[4] = rb;
+        radii[5] = rb;
+        radii[6] = lb;
+        radii[7] = lb;
+    }
+
+    private void calculatePath(){
+        mLayoutDirty = false;
+        calcRadii();
+
+        float oldLeft = mBounds.left;
+        float oldTop = mBounds.top;
+        float oldRight = mBounds.right;
+        float oldBottom = mBounds.bottom;
+
+        float left, top, right, bottom;
+
+        if (borderWidth > 0) {
+            left = (borderWidth / 2) + mPaddingLeft;
+            top = (borderWidth / 2) + mPaddingTop;
+            right = mWidth - ((borderWidth / 2) + mPaddingRight);
+            bottom = mHeight - ((borderWidth / 2) + mPaddingBottom);
+            mBorderBounds.set(left, top, right, bottom);
+            left = (int) (left + (borderWidth / 2));
+            top = (int) (top + (borderWidth / 2));
+            right = (int) (right - (borderWidth / 2));
+            bottom = (int) (bottom - (borderWidth / 2));
+            mBounds.set(left, top, right, bottom);
+        } else {
+            left = 0;
+            top = 0;
+            right = mWidth;
+            bottom = mHeight;
+            mBounds.set(left, top, right, bottom);
+            mBorderBounds.set(mBounds);
+        }
+
+        mContentWidth = mBounds.width();
+        mContentHeight = mBounds.height();
+        if (oldLeft != mBounds.left || oldTop != mBounds.top
+                || oldRight != mBounds.right || oldBottom != mBounds.bottom) {
+            mStaticLayerDirty = true;
+        }
+    }
+
+    private void invalidateLayout() {
+        mLayoutDirty = true;
+        mStaticLayerDirty = true;
+    }
+
+    private void buildStaticLayer() {
+        mStaticLayerDirty = false;
+        boolean rounded = viewType == VIEW_TYPE_RECTANGLE || viewType == VIEW_TYPE_SQUARE;
+
+        // Background
+        mBackgroundPath.reset();
+        mHasBackground = updateBackgroundPaint();
+        if (mHasBackground) {
+            if (rounded) {
+                mBackgroundPath.addRoundRect(mBorderBounds, mRadii, Path.Direction.CW);
+            } else {
+                mBackgroundPath.addOval(mBorderBounds, Path.Direction.CW);
+            }
+        }
+
+        // Wave clip
+        mClipPath.reset();
+        if (rounded) {
+            mClipPath.addRoundRect(mBounds, mRadii, Path.Direction.CW);
+        } else {
+            mClipPath.addOval(mBounds, Path.Direction.CW);
+        }
+        mWaveShaderMatrix.setTranslate(mBounds.left, mBounds.top);
+        if (mWaveShader != null) {
+            mWaveShader.setLocalMatrix(mWaveShaderMatrix);
+        }
+
+        // Border
+        mBorder.reset();
+        if (borderWidth > 0) {
+            if (rounded) {
+                mBorder.addRoundRect(mBorderBounds, mBorderRadii, Path.Direction.CW);
+            } else {
+                mBorder.addOval(mBorderBounds, Path.Direction.CW);
+            }
+            mBorderPaint.setColor(borderColor);
+            mBorderPaint.setStyle(Paint.Style.STROKE);
+            mBorderPaint.setStrokeWidth(borderWidth);
+        }
+    }
+
+    private boolean updateBackgroundPaint() {
+        mBackgroundPaint.setStyle(Paint.Style.FILL);
+        mBackgroundPaint.setShader(null);
+        if (backgroundDrawable == null) {
+            releaseBackgroundBitmap();
+            return false;
+        }
+
+        if (backgroundDrawable instanceof ColorDrawable) {
+            releaseBackgroundBitmap();
+            mBackgroundPaint.setColor(((ColorDrawable) backgroundDrawable).getColor());
+            return true;
+        }
+
+        Bitmap background = getBitmapFromDrawable(backgroundDrawable);
+        if (background == null) {
+            return false;
+        }
+        mBackgroundPaint.setColor(Color.BLACK);
+        mBackgroundPaint.setShader(new BitmapShader(background, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+        return true;
+    }
+
+    private void releaseBackgroundBitmap() {
+        if (mBackgroundBitmap != null) {
+            mBackgroundBitmap.recycle();
+            mBackgroundBitmap = null;
+        }
+    }
+
+    private Bitmap getBitmapFromDrawable(Drawable drawable) {
+        if (drawable == null) {
+            return null;
+        }
+
+        if (drawable instanceof BitmapDrawable) {
+            releaseBackgroundBitmap();
+            return ((BitmapDrawable) drawable).getBitmap();
+        }
+
+        int width = mWidth;
+        int height = mHeight;
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+
+        try {
+            if (mBackgroundBitmap == null || mBackgroundBitmap.getWidth() != width
+                    || mBackgroundBitmap.getHeight() != height) {
+                releaseBackgroundBitmap();
+                mBackgroundBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } else {
+                mBackgroundBitmap.eraseColor(Color.TRANSPARENT);
+            }
+
+            Canvas canvas = new Canvas(mBackgroundBitmap);
+            drawable.setBounds(0, 0, width, height);
+            drawable.draw(canvas);
+            return mBackgroundBitmap;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Matches the per-layer paints and outlines to the model's layers.
+     */
+    private void updateLayers() {
+        int count = mModel.getLayerCount();
+        if (mLayerPaints.length != count) {
+            mLayerPaints = new Paint[count];
+            mLayerGeometries = new WaveGeometry[count];
+            for (int i = 0; i < count; i++) {
+                mLayerPaints[i] = new Paint(Paint.ANTI_ALIAS_FLAG);
+                mLayerGeometries[i] = new WaveGeometry();
+            }
+        }
+        // Tints the alpha masks; the layer alphas are already in the mask
+        int maskColor = firstWaveColor | 0xFF000000;
+        mWavePaint.setColor(maskColor);
+        mMaskPaint.setColor(maskColor);
+        int hash = 1;
+        for (int i = 0; i < count; i++) {
+            WaveLayer layer = mModel.getLayer(i);
+            mLayerPaints[i].setColor(firstWaveColor);
+            mLayerPaints[i].setAlpha(layer.getAlpha());
+            hash = 31 * hash + layer.hashCode();
+        }
+        mLayersHash = hash;
+    }
+
+    private boolean ensureWaveBitmap() {
+        int width = (int) mContentWidth;
+        int height = (int) mContentHeight;
+        if (width <= 0 || height <= 0) {
+            releaseWaveBitmap();
+            return false;
+        }
+        if (mWaveBitmap != null && mWaveBitmap.getWidth() == width
+                && mWaveBitmap.getHeight() == height) {
+            return true;
+        }
+
+        releaseWaveBitmap();
+        if (mWaveBitmapPool != null) {
+            mWaveBitmap = mWaveBitmapPool.acquire(width, height, WAVE_MASK_CONFIG);
+        } else {
+            mWaveBitmap = Bitmap.createBitmap(width, height, WAVE_MASK_CONFIG);
+        }
+        if (mMetrics != null) {
+            mMetrics.onBitmapAllocated();
+        }
+        mWaveCanvas.setBitmap(mWaveBitmap);
+        mWaveShader = new BitmapShader(mWaveBitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        mWaveShader.setLocalMatrix(mWaveShaderMatrix);
+        mWavePaint.setStyle(Paint.Style.FILL);
+        mWavePaint.setShader(mWaveShader);
+        return true;
+    }
+
+    private void releaseWaveBitmap() {
+        if (mWaveBitmap == null) {
+            return;
+        }
+        mWaveCanvas.setBitmap(null);
+        mWavePaint.setShader(null);
+        if (mWaveBitmapPool != null) {
+            mWaveBitmapPool.release(mWaveBitmap);
+        } else {
+            mWaveBitmap.recycle();
+        }
+        mWaveBitmap = null;
+        mWaveShader = null;
+    }
+
+    private void drawWaveBitmap(){
+        mWaveBitmap.eraseColor(Color.TRANSPARENT);
+        drawWaves(mWaveCanvas);
+    }
+
+    private void drawWavesDirect(Canvas canvas) {
+        int count = canvas.save();
+        canvas.clipPath(mClipPath);
+        canvas.translate(mBounds.left, mBounds.top);
+        drawWaves(canvas);
+        canvas.restoreToCount(count);
+    }
+
+    private boolean supportsDirectRendering() {
+        return mDirectRenderingSupported;
+    }
+
+    /**
+     * Overrides the Android P check for the direct paths. JVM tests run
+     * below P, where the direct mode would otherwise never be drawn.
+     */
+    void setDirectRenderingSupported(boolean supported) {
+        mDirectRenderingSupported = supported;
+    }
+
+    private void drawWaves(Canvas canvas) {
+        int layers = isAdaptive() ? mLevelOfDetail.getLayerCount() : mModel.getLayerCount();
+        if (isBatched() && canDrawVertices(canvas)) {
+            drawWavesBatched(canvas, layers);
+        } else {
+            drawWaves(canvas, mModel.getPhase(), mModel.getLevel(), layers);
+        }
+    }
+
+    private void drawWaves(Canvas canvas, float phase, float realHeight, int layers) {
+        // Задние волны первыми, основная волна последней
+        for (int i = layers - 1; i >= 0; i--) {
+            drawWave(canvas, i, mModel.getLayerPhase(i, phase), realHeight);
+        }
+    }
+
+    private static boolean canDrawVertices(Canvas canvas) {
+        return !canvas.isHardwareAccelerated()
+                || Build.VERSION.SDK_INT >= HARDWARE_VERTICES_MIN_SDK;
+    }
+
+    /**
+     * Draws all layers as one triangle strip with per-vertex colors, so the
+     * cost barely grows with the number of layers. Strips are joined with
+     * degenerate triangles; mesh edges are not anti-aliased.
+     */
+    private void drawWavesBatched(Canvas canvas, int layers) {
+        // The fine adaptive step only pays off for curve outlines; a mesh
+        // that dense would cost more than the layers adaptive quality drops
+        int count = mModel.getLayerVertexCount(X_SPACE);
+        int vertices = layers * count * 2 + (layers - 1) * 2;
+        if (mCrest.length < count * 2) {
+            mCrest = new float[count * 2];
+        }
+        if (mMeshColors.length < vertices) {
+            mMeshVertices = new float[vertices * 2];
+            mMeshColors = new int[vertices];
+        }
+
+        float bottom = mContentHeight;
+        int v = 0;
+        for (int layer = layers - 1; layer >= 0; layer--) {
+            mModel.fillLayer(layer, X_SPACE, mCrest, 0);
+            int color = mLayerPaints[layer].getColor();
+            if (v > 0) {
+                v = putMeshVertex(v, mMeshVertices[v * 2 - 2], mMeshVertices[v * 2 - 1], color);
+                v = putMeshVertex(v, mCrest[0], mCrest[1], color);
+            }
+            for (int i = 0; i < count; i++) {
+                v = putMeshVertex(v, mCrest[i * 2], mCrest[i * 2 + 1], color);
+                v = putMeshVertex(v, mCrest[i * 2], bottom, color);
+            }
+        }
+        canvas.drawVertices(Canvas.VertexMode.TRIANGLE_STRIP, v * 2, mMeshVertices, 0,
+                null, 0, mMeshColors, 0, null, 0, 0, mMeshPaint);
+    }
+
+    private int putMeshVertex(int index, float x, float y, int color) {
+        mMeshVertices[index * 2] = x;
+        mMeshVertices[index * 2 + 1] = y;
+        mMeshColors[index] = color;
+        return index + 1;
+    }
+
+    private void drawCachedFrame(Canvas canvas, Bitmap frame) {
+        if (supportsDirectRendering()) {
+            releaseWaveBitmap();
+            int count = canvas.save();
+            canvas.clipPath(mClipPath);
+            canvas.drawBitmap(frame, mBounds.left, mBounds.top, mMaskPaint);
+            canvas.restoreToCount(count);
+        } else if (ensureWaveBitmap()) {
+            mWaveBitmap.eraseColor(Color.TRANSPARENT);
+            mWaveCanvas.drawBitmap(frame, 0, 0, null);
+            canvas.drawPath(mClipPath, mWavePaint);
+        }
+    }
+
+    /**
+     * Returns the cached frame for the current phase and progress, rendering
+     * it on a miss, or null when the waves have to be drawn live: while the
+     * progress animates every frame would be a new miss, and a loop that does
+     * not fit into the cache would evict itself.
+     */
+    private Bitmap obtainCachedFrame() {
+        WaveFrameCache cache = getWaveFrameCache();
+        if (mProgressAnimating
+                || !cache.canHold((int) mContentWidth, (int) mContentHeight, mCachedLoopFrames)) {
+            return null;
+        }
+        int frameIndex = (int) (mModel.getPhase() / PI2 * mCachedLoopFrames) % mCachedLoopFrames;
+        int bucket = Math.round(mModel.getProgress());
+
+        WaveFrameCache.Key key = mFrameKey;
+        key.width = (int) mContentWidth;
+        key.height = (int) mContentHeight;
+        key.heightMode = mModel.getHeightMode();
+        key.lengthMode = mModel.getLengthMode();
+        key.layersHash = mLayersHash;
+        key.frameCount = mCachedLoopFrames;
+        key.progressBucket = bucket;
+        key.frameIndex = frameIndex;
+
+        Bitmap frame = cache.get(key);
+        if (mMetrics != null) {
+            if (frame != null) {
+                mMetrics.onCacheHit();
+            } else {
+                mMetrics.onCacheMiss();
+            }
+        }
+        if (frame == null) {
+            frame = cache.acquireFrame(key.width, key.height, WAVE_MASK_CONFIG);
+            // A pooled frame still holds the waves of the one it replaced
+            frame.eraseColor(Color.TRANSPARENT);
+            float phase = (float) PI2 * frameIndex / mCachedLoopFrames;
+            mFrameCanvas.setBitmap(frame);
+            drawWaves(mFrameCanvas, phase, mModel.getLevel(bucket), mModel.getLayerCount());
+            mFrameCanvas.setBitmap(null);
+            cache.put(key, frame);
+        }
+        return frame;
+    }
+
+    private void drawWave(Canvas canvas, int layer, float phase, float realHeight) {
+        int count = canvas.save();
+        canvas.translate(mModel.getShift(layer, phase), realHeight);
+        canvas.drawPath(mLayerGeometries[layer].getPath(), mLayerPaints[layer]);
+        canvas.restoreToCount(count);
+    }
+}
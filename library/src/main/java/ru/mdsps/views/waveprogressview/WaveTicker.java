@@ -0,0 +1,133 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Process-wide animation clock for the wave widgets. Posts a single frame
+ * callback per vsync while anything is subscribed and fans it out to every
+ * listener, so the scheduling cost does not grow with the number of views.
+ * Must be used from the main thread. Before Jelly Bean, where there is no
+ * Choreographer, frames come from a delayed main-thread message.
+ */
+
+final class WaveTicker implements Runnable {
+
+    private final static long FALLBACK_FRAME_DELAY = 16;
+
+    interface Listener {
+        void onFrame(long frameTimeNanos);
+    }
+
+    private static WaveTicker sInstance;
+
+    private final ArrayList<Listener> mListeners = new ArrayList<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private Listener[] mDispatch = new Listener[8];
+    private boolean mScheduled;
+    // Only created on API 16+, so older devices never load Choreographer types
+    private FrameCallback mFrameCallback;
+
+    private WaveTicker() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameCallback = new FrameCallback(this);
+        }
+    }
+
+    static WaveTicker getInstance() {
+        if (sInstance == null) {
+            sInstance = new WaveTicker();
+        }
+        return sInstance;
+    }
+
+    void add(Listener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+            schedule();
+        }
+    }
+
+    void remove(Listener listener) {
+        mListeners.remove(listener);
+        if (mListeners.isEmpty()) {
+            unschedule();
+        }
+    }
+
+    int getListenerCount() {
+        return mListeners.size();
+    }
+
+    private void schedule() {
+        if (mScheduled) {
+            return;
+        }
+        mScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameCallback.post();
+        } else {
+            mHandler.postDelayed(this, FALLBACK_FRAME_DELAY);
+        }
+    }
+
+    private void unschedule() {
+        if (!mScheduled) {
+            return;
+        }
+        mScheduled = false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mFrameCallback.remove();
+        } else {
+            mHandler.removeCallbacks(this);
+        }
+    }
+
+    private void doFrame(long frameTimeNanos) {
+        mScheduled = false;
+
+        // Listeners may subscribe or unsubscribe while the frame is dispatched
+        int count = mListeners.size();
+        mDispatch = mListeners.toArray(mDispatch);
+        for (int i = 0; i < count; i++) {
+            mDispatch[i].onFrame(frameTimeNanos);
+        }
+        Arrays.fill(mDispatch, 0, count, null);
+
+        if (!mListeners.isEmpty()) {
+            schedule();
+        }
+    }
+
+    @Override
+    public void run() {
+        doFrame(System.nanoTime());
+    }
+
+    private static final class FrameCallback implements Choreographer.FrameCallback {
+
+        private final WaveTicker mTicker;
+
+        FrameCallback(WaveTicker ticker) {
+            mTicker = ticker;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void remove() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mTicker.doFrame(frameTimeNanos);
+        }
+    }
+}
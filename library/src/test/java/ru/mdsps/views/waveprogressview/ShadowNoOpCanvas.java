@@ -0,0 +1,75 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+
+/**
+ * Canvas that draws nothing and records nothing. The default canvas shadow
+ * keeps a history of every call, so allocation tests that draw real frames
+ * would measure the shadow instead of the renderer.
+ */
+@Implements(Canvas.class)
+public class ShadowNoOpCanvas {
+
+    public void __constructor__() {
+    }
+
+    public void __constructor__(Bitmap bitmap) {
+    }
+
+    @Implementation
+    public void setBitmap(Bitmap bitmap) {
+    }
+
+    @Implementation
+    public boolean getClipBounds(Rect bounds) {
+        return false;
+    }
+
+    @Implementation
+    public int save() {
+        return 1;
+    }
+
+    @Implementation
+    public void restoreToCount(int saveCount) {
+    }
+
+    @Implementation
+    public void translate(float dx, float dy) {
+    }
+
+    @Implementation
+    public boolean clipPath(Path path) {
+        return true;
+    }
+
+    @Implementation
+    public void drawColor(int color) {
+    }
+
+    @Implementation
+    public void drawColor(int color, PorterDuff.Mode mode) {
+    }
+
+    @Implementation
+    public void drawPath(Path path, Paint paint) {
+    }
+
+    @Implementation
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+    }
+
+    @Implementation
+    public void drawVertices(Canvas.VertexMode mode, int vertexCount, float[] verts, int vertOffset,
+                             float[] texs, int texOffset, int[] colors, int colorOffset,
+                             short[] indices, int indexOffset, int indexCount, Paint paint) {
+    }
+}
@@ -0,0 +1,121 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cached wave loops: live drawing when caching cannot pay off, evicted
+ * frames going back to a private bitmap pool and left alone by shared caches.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class WaveFrameCacheTest {
+
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 80;
+    private static final int FRAMES = 8;
+    private static final long FRAME_NANOS = 16666667L;
+
+    private WaveRenderer mRenderer;
+    private WaveFrameMetrics mMetrics;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() throws Exception {
+        mRenderer = new WaveRenderer();
+        mRenderer.setBounds(WIDTH, HEIGHT, 0, 0, 0, 0);
+        mRenderer.setCachedLoopEnabled(true);
+        mRenderer.setCachedLoopFrameCount(FRAMES);
+        mMetrics = new WaveFrameMetrics();
+        mMetrics.setTracingEnabled(false);
+        mRenderer.setFrameMetrics(mMetrics);
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void animatingProgress_drawsLive() throws Exception {
+        WaveFrameCache cache = new WaveFrameCache(WIDTH * HEIGHT * FRAMES, new WaveBitmapPool(0));
+        mRenderer.setWaveFrameCache(cache);
+        mRenderer.draw(mCanvas);
+        assertEquals(1, cache.size());
+
+        mRenderer.setProgress(80, true);
+        long time = FRAME_NANOS;
+        for (int i = 0; i < 10; i++) {
+            mRenderer.advance(time += FRAME_NANOS, true);
+            mRenderer.draw(mCanvas);
+        }
+
+        assertTrue(mRenderer.isProgressAnimating());
+        assertEquals(1, cache.size());
+        assertEquals(1, mMetrics.getSnapshot().getCacheMissCount());
+    }
+
+    @Test
+    public void loopLargerThanCache_drawsLive() throws Exception {
+        WaveFrameCache cache = new WaveFrameCache(WIDTH * HEIGHT * FRAMES - 1, new WaveBitmapPool(0));
+        mRenderer.setWaveFrameCache(cache);
+        mRenderer.draw(mCanvas);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, mMetrics.getSnapshot().getCacheMissCount());
+    }
+
+    @Test
+    public void evictedFrames_returnToPool() throws Exception {
+        Bitmap first = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8);
+        // Room for one frame only
+        WaveBitmapPool pool = new WaveBitmapPool(first.getByteCount());
+        WaveFrameCache cache = new WaveFrameCache(first.getByteCount(), pool);
+        WaveFrameCache.Key key = new WaveFrameCache.Key();
+        cache.put(key, first);
+
+        key.frameIndex = 1;
+        cache.put(key, cache.acquireFrame(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8));
+
+        assertFalse(first.isRecycled());
+        assertSame(first, cache.acquireFrame(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8));
+    }
+
+    @Test
+    public void pooledFrame_isClearedBeforeDrawing() throws Exception {
+        Bitmap stale = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8);
+        stale.eraseColor(Color.BLACK);
+        WaveBitmapPool pool = new WaveBitmapPool(stale.getByteCount());
+        pool.release(stale);
+        WaveFrameCache cache = new WaveFrameCache(WIDTH * HEIGHT * FRAMES, pool);
+        mRenderer.setWaveFrameCache(cache);
+
+        mRenderer.draw(mCanvas);
+
+        assertEquals(1, mMetrics.getSnapshot().getCacheMissCount());
+        // The miss took the stale bitmap; above the waves it must be empty
+        assertNotSame(stale, pool.acquire(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8));
+        assertEquals(Color.TRANSPARENT, stale.getPixel(0, 0));
+    }
+
+    @Test
+    public void sharedCache_leavesEvictedFramesAlone() throws Exception {
+        Bitmap first = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8);
+        WaveFrameCache cache = new WaveFrameCache(first.getByteCount());
+        WaveFrameCache.Key key = new WaveFrameCache.Key();
+        cache.put(key, first);
+
+        key.frameIndex = 1;
+        Bitmap second = cache.acquireFrame(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8);
+        cache.put(key, second);
+
+        assertEquals(1, cache.size());
+        assertFalse(first.isRecycled());
+        assertNotSame(first, cache.acquireFrame(WIDTH, HEIGHT, Bitmap.Config.ALPHA_8));
+    }
+}
@@ -0,0 +1,210 @@
+package ru.mdsps.views.waveprogressview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plain JVM tests of the wave math, no Android runtime involved.
+ */
+public class WaveModelTest {
+
+    private static final float DELTA = 1e-3f;
+    private static final float PI2 = (float) (2 * Math.PI);
+
+    private WaveModel mModel;
+
+    @Before
+    public void setUp() throws Exception {
+        mModel = new WaveModel();
+        mModel.setSize(300, 400);
+        mModel.setProgress(25);
+    }
+
+    @Test
+    public void sin_matchesMathSin() throws Exception {
+        for (float x = -10; x < 10; x += 0.01f) {
+            assertEquals(Math.sin(x), WaveModel.sin(x), DELTA);
+        }
+    }
+
+    @Test
+    public void modes_giveLengthAndAmplitude() throws Exception {
+        mModel.setLengthMode(WaveModel.MODE_LARGE);
+        mModel.setHeightMode(WaveModel.MODE_LITTLE);
+        assertEquals(450, mModel.getWaveLength(), DELTA);
+        assertEquals(8, mModel.getAmplitude(), DELTA);
+
+        mModel.setLengthMode(WaveModel.MODE_LITTLE);
+        mModel.setHeightMode(WaveModel.MODE_MIDDLE);
+        assertEquals(150, mModel.getWaveLength(), DELTA);
+        assertEquals(16, mModel.getAmplitude(), DELTA);
+    }
+
+    @Test
+    public void level_followsProgress() throws Exception {
+        assertEquals(300, mModel.getLevel(), DELTA);
+        assertEquals(0, mModel.getLevel(100), DELTA);
+        assertEquals(400, mModel.getLevel(0), DELTA);
+    }
+
+    @Test
+    public void setTime_advancesPhaseBySpeed() throws Exception {
+        mModel.setSpeed(0.5f);
+        mModel.setTime(1000000000L);
+        assertEquals(0, mModel.getPhase(), DELTA);
+
+        mModel.setTime(1500000000L);
+        assertEquals(PI2 * 0.25f, mModel.getPhase(), DELTA);
+    }
+
+    @Test
+    public void resetTime_skipsPausedTime() throws Exception {
+        mModel.setSpeed(1);
+        mModel.setTime(1000000000L);
+        mModel.setTime(1250000000L);
+        float phase = mModel.getPhase();
+
+        mModel.resetTime();
+        mModel.setTime(9000000000L);
+        assertEquals(phase, mModel.getPhase(), DELTA);
+    }
+
+    @Test
+    public void fillOutline_samplesOneExtraWaveLength() throws Exception {
+        float[] out = new float[mModel.getOutlineVertexCount(0) * 2];
+        int count = mModel.fillOutline(0, out, 0);
+
+        assertEquals(out.length, count);
+        assertEquals(0, out[0], DELTA);
+        assertTrue(out[count - 2] >= mModel.getWidth() + mModel.getWaveLength());
+        float omega = PI2 / mModel.getWaveLength();
+        float amplitude = mModel.getAmplitude();
+        for (int i = 0; i < count; i += 2) {
+            assertEquals(amplitude * Math.sin(omega * out[i]) + amplitude, out[i + 1], DELTA * 10);
+        }
+    }
+
+    @Test
+    public void fillOutlineCurve_staysOnTheSine() throws Exception {
+        mModel.setStep(4);
+        float[] out = new float[mModel.getOutlineCurveSize(0)];
+        int count = mModel.fillOutlineCurve(0, out, 0);
+
+        assertEquals(out.length, count);
+        assertTrue(out[count - 2] >= mModel.getWidth() + mModel.getWaveLength());
+        float omega = PI2 / mModel.getWaveLength();
+        float amplitude = mModel.getAmplitude();
+        float x0 = out[0];
+        float y0 = out[1];
+        for (int i = 2; i < count; i += 4) {
+            // Sample each quadratic segment and compare with the sine
+            for (float t = 0; t <= 1; t += 0.125f) {
+                float u = 1 - t;
+                float x = u * u * x0 + 2 * u * t * out[i] + t * t * out[i + 2];
+                float y = u * u * y0 + 2 * u * t * out[i + 1] + t * t * out[i + 3];
+                assertEquals(amplitude * Math.sin(omega * x) + amplitude, y, amplitude * 0.005f);
+            }
+            x0 = out[i + 2];
+            y0 = out[i + 3];
+        }
+    }
+
+    @Test
+    public void fillLayer_matchesShiftedOutline() throws Exception {
+        mModel.setPhase(1.3f);
+        float[] layer = new float[mModel.getLayerVertexCount() * 2];
+        int count = mModel.fillLayer(0, layer, 0);
+
+        assertEquals(layer.length, count);
+        assertEquals(mModel.getWidth(), layer[count - 2], DELTA);
+        float shift = mModel.getShift(0, mModel.getLayerPhase(0));
+        float omega = PI2 / mModel.getWaveLength();
+        float amplitude = mModel.getAmplitude();
+        for (int i = 0; i < count; i += 2) {
+            float expected = mModel.getLevel() + amplitude
+                    + amplitude * (float) Math.sin(omega * (layer[i] - shift));
+            assertEquals(expected, layer[i + 1], DELTA * 10);
+        }
+    }
+
+    @Test
+    public void layers_areShiftedByWaveHeight() throws Exception {
+        mModel.setHeightMode(WaveModel.MODE_LARGE);
+        assertEquals(0, mModel.getLayerPhase(0, 0), DELTA);
+        assertEquals(24 * 0.4f % PI2, mModel.getLayerPhase(1, 0), DELTA);
+        assertEquals(24 * 0.6f % PI2, mModel.getLayerPhase(2, 0), DELTA);
+    }
+
+    @Test
+    public void customLayers_scaleAmplitudeAndLength() throws Exception {
+        mModel.setLayers(new WaveLayer[] {
+                new WaveLayer(255, 0, 1, 1),
+                new WaveLayer(120, 1, 0.5f, 2),
+                new WaveLayer(60, 2, 0.25f, 0.5f),
+                new WaveLayer(30, 3, 2, 1)
+        });
+        assertEquals(4, mModel.getLayerCount());
+        assertEquals(mModel.getAmplitude() * 0.5f, mModel.getLayerAmplitude(1), DELTA);
+        assertEquals(mModel.getWaveLength() * 2, mModel.getLayerWaveLength(1), DELTA);
+        assertEquals(3, mModel.getLayerPhase(3, 0), DELTA);
+
+        mModel.setPhase(0.7f);
+        float[] layer = new float[mModel.getLayerVertexCount() * 2];
+        int count = mModel.fillLayer(2, layer, 0);
+        float omega = PI2 / mModel.getLayerWaveLength(2);
+        float amplitude = mModel.getLayerAmplitude(2);
+        for (int i = 0; i < count; i += 2) {
+            float expected = mModel.getLevel() + amplitude
+                    + amplitude * (float) Math.sin(omega * layer[i] + 2.7f);
+            assertEquals(expected, layer[i + 1], DELTA * 10);
+        }
+
+        mModel.setLayers(null);
+        assertEquals(3, mModel.getLayerCount());
+        assertFalse(mModel.hasCustomLayers());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setLayers_rejectsEmpty() throws Exception {
+        mModel.setLayers(new WaveLayer[0]);
+    }
+
+    @Test
+    public void fillLayer_usesGivenStep() throws Exception {
+        mModel.setStep(4);
+        float[] layer = new float[mModel.getLayerVertexCount(20) * 2];
+        int count = mModel.fillLayer(0, 20, layer, 0);
+
+        assertEquals(layer.length, count);
+        assertEquals(17, count / 2);
+        assertEquals(20, layer[2], DELTA);
+        assertEquals(mModel.getWidth(), layer[count - 2], DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fillLayer_rejectsShortBuffer() throws Exception {
+        mModel.fillLayer(0, new float[4], 0);
+    }
+
+    @Test
+    public void fillLayer_doesNotAllocate() throws Exception {
+        float[] out = new float[mModel.getLayerVertexCount() * 2];
+        for (int i = 0; i < 1000; i++) {
+            mModel.fillLayer(i % mModel.getLayerCount(), out, 0);
+        }
+
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 1000; i++) {
+            mModel.setTime(i * 16666667L + 1);
+            mModel.fillLayer(i % mModel.getLayerCount(), out, 0);
+        }
+        long allocated = bean.getThreadAllocatedBytes(id) - before;
+
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1000);
+    }
+}
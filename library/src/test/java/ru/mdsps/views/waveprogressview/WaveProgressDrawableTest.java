@@ -0,0 +1,80 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Wave band invalidation: a tick only redraws the rows the waves move in.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class WaveProgressDrawableTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 400;
+    private static final int LARGE_AMPLITUDE = 24;
+
+    private WaveProgressDrawable mDrawable;
+    private Rect mDirty;
+
+    // Drawables keep their callback weakly
+    private final Drawable.Callback mCallback = new Drawable.Callback() {
+        @Override
+        public void invalidateDrawable(Drawable who) {
+            mDirty = new Rect(who.getDirtyBounds());
+        }
+
+        @Override
+        public void scheduleDrawable(Drawable who, Runnable what, long when) {
+        }
+
+        @Override
+        public void unscheduleDrawable(Drawable who, Runnable what) {
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        mDrawable = new WaveProgressDrawable();
+        mDrawable.setBounds(0, 0, WIDTH, HEIGHT);
+        mDrawable.setWaveHeightMode(WaveModel.MODE_LARGE);
+        mDrawable.setCallback(mCallback);
+    }
+
+    @Test
+    public void tick_invalidatesWaveBandOnly() throws Exception {
+        mDrawable.setProgress(50);
+        mDirty = null;
+
+        assertTrue(mDrawable.invalidateWaveBand());
+        assertNotNull(mDirty);
+        assertEquals(0, mDirty.left);
+        assertEquals(WIDTH, mDirty.right);
+        // Crests at the level, troughs two amplitudes below it
+        assertTrue(mDirty.top <= HEIGHT / 2);
+        assertTrue(mDirty.bottom >= HEIGHT / 2 + 2 * LARGE_AMPLITUDE);
+        assertTrue(mDirty.height() < HEIGHT / 4);
+
+        // Other changes still invalidate everything
+        mDrawable.setBorderWidth(4);
+        assertEquals(new Rect(0, 0, WIDTH, HEIGHT), mDirty);
+    }
+
+    @Test
+    public void emptyGauge_skipsTicks() throws Exception {
+        mDrawable.setProgress(0);
+        mDirty = null;
+
+        assertFalse(mDrawable.hasWaveBand());
+        assertFalse(mDrawable.invalidateWaveBand());
+        assertNull(mDirty);
+    }
+}
@@ -0,0 +1,136 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Grid layout, id lookup and shared wave outlines of the gauge group.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class WaveProgressGroupTest {
+
+    private static final int GAUGES = 10;
+
+    private WaveProgressGroup mGroup;
+
+    @Before
+    public void setUp() throws Exception {
+        mGroup = new WaveProgressGroup(RuntimeEnvironment.application);
+        mGroup.setColumnCount(4);
+        mGroup.setCellSpacing(0);
+        List<WaveProgressGroup.Gauge> gauges = new ArrayList<>();
+        for (int i = 0; i < GAUGES; i++) {
+            WaveProgressGroup.Gauge gauge = new WaveProgressGroup.Gauge(100 + i);
+            gauge.setProgress(i * 10);
+            gauges.add(gauge);
+        }
+        mGroup.setGauges(gauges);
+    }
+
+    @Test
+    public void measure_fitsAllRows() throws Exception {
+        mGroup.measure(View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+
+        // Three rows of square 100 px cells
+        assertEquals(400, mGroup.getMeasuredWidth());
+        assertEquals(300, mGroup.getMeasuredHeight());
+    }
+
+    @Test
+    public void progressById_updatesOneGauge() throws Exception {
+        assertEquals(3, mGroup.indexOfGauge(103));
+        assertEquals(-1, mGroup.indexOfGauge(99));
+
+        mGroup.setGaugeProgressById(103, 75);
+
+        assertEquals(75, mGroup.getGaugeProgress(3), 0);
+        assertEquals(75, mGroup.getGauge(3).getProgress(), 0);
+        assertEquals(40, mGroup.getGaugeProgress(4), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setGauges_rejectsDuplicateIds() throws Exception {
+        mGroup.setGauges(Arrays.asList(new WaveProgressGroup.Gauge(1), new WaveProgressGroup.Gauge(1)));
+    }
+
+    @Test
+    public void sameSizeAndModes_shareOutlines() throws Exception {
+        WaveGeometryCache cache = new WaveGeometryCache();
+        WaveRenderer first = new WaveRenderer();
+        WaveRenderer second = new WaveRenderer();
+        for (WaveRenderer renderer : Arrays.asList(first, second)) {
+            renderer.setGeometryCache(cache);
+            renderer.setBounds(100, 100, 0, 0, 0, 0);
+            renderer.prepareFrame();
+        }
+        // The default layers differ only in phase, so they share one outline too
+        assertEquals(1, cache.size());
+
+        second.setWaveHeightMode(WaveModel.MODE_LITTLE);
+        second.prepareFrame();
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void restyledGauges_dropOnlyUnusedOutlines() throws Exception {
+        WaveGeometryCache cache = new WaveGeometryCache();
+        WaveRenderer first = new WaveRenderer();
+        WaveRenderer second = new WaveRenderer();
+        for (WaveRenderer renderer : Arrays.asList(first, second)) {
+            renderer.setGeometryCache(cache);
+            renderer.setBounds(100, 100, 0, 0, 0, 0);
+            renderer.setWaveHeightMode(WaveModel.MODE_LITTLE);
+            renderer.prepareFrame();
+        }
+        first.setWaveHeightMode(WaveModel.MODE_MIDDLE);
+        first.prepareFrame();
+
+        Set<WaveGeometry> used = new HashSet<>();
+        first.collectGeometries(used);
+        second.collectGeometries(used);
+        cache.retainAll(used);
+        assertEquals(2, cache.size());
+
+        second.setWaveHeightMode(WaveModel.MODE_MIDDLE);
+        second.prepareFrame();
+        used.clear();
+        first.collectGeometries(used);
+        second.collectGeometries(used);
+        cache.retainAll(used);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void gaugeLayers_areCopied() throws Exception {
+        List<WaveLayer> layers = new ArrayList<>(
+                Collections.singletonList(new WaveLayer(255, 0, 1, 1)));
+        WaveProgressGroup.Gauge gauge = new WaveProgressGroup.Gauge(7);
+        gauge.setWaveLayers(layers);
+        mGroup.setGauges(Collections.singletonList(gauge));
+        layers.clear();
+
+        assertEquals(Collections.singletonList(new WaveLayer(255, 0, 1, 1)),
+                mGroup.getGauge(0).getWaveLayers());
+
+        gauge.setWaveLayers(null);
+        mGroup.setGauges(Collections.singletonList(gauge));
+        assertNull(mGroup.getGauge(0).getWaveLayers());
+    }
+}
@@ -0,0 +1,97 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Guards the allocation-free steady state of the wave animation. Frames are
+ * drawn into a canvas that records nothing, so whatever is allocated comes
+ * from the view and its renderer.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23, shadows = ShadowNoOpCanvas.class)
+public class WaveProgressViewAllocationTest {
+
+    private static final int FRAMES = 1000;
+    private static final long FRAME_NANOS = 16666667L;
+
+    private WaveProgressView mView;
+    private long mTime = FRAME_NANOS;
+
+    @Before
+    public void setUp() throws Exception {
+        mView = new WaveProgressView(RuntimeEnvironment.application);
+        layout(mView, 300, 400);
+    }
+
+    @Test
+    public void steadyStateFrames_doNotAllocate() throws Exception {
+        Canvas canvas = new Canvas(Bitmap.createBitmap(300, 400, Bitmap.Config.ARGB_8888));
+        for (int i = 0; i < FRAMES; i++) {
+            drawFrame(canvas);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < FRAMES; i++) {
+            drawFrame(canvas);
+        }
+        long allocated = allocatedBytes() - before;
+
+        assertTrue("Allocated " + allocated + " bytes over " + FRAMES + " frames",
+                allocated < FRAMES);
+    }
+
+    @Test
+    public void waveBitmap_isReusedAcrossFrames() throws Exception {
+        Canvas canvas = new Canvas(Bitmap.createBitmap(300, 400, Bitmap.Config.ARGB_8888));
+        mView.onDraw(canvas);
+        Bitmap bitmap = mView.getWaveBitmap();
+        assertNotNull(bitmap);
+
+        for (int i = 0; i < 100; i++) {
+            mView.onDraw(canvas);
+        }
+        assertSame(bitmap, mView.getWaveBitmap());
+    }
+
+    @Test
+    public void waveBitmap_isReallocatedOnResize() throws Exception {
+        Canvas canvas = new Canvas(Bitmap.createBitmap(300, 400, Bitmap.Config.ARGB_8888));
+        mView.onDraw(canvas);
+        Bitmap bitmap = mView.getWaveBitmap();
+
+        layout(mView, 200, 400);
+        mView.onDraw(canvas);
+        assertNotSame(bitmap, mView.getWaveBitmap());
+        assertEquals(200, mView.getWaveBitmap().getWidth());
+    }
+
+    private void drawFrame(Canvas canvas) {
+        mView.advanceFrame(mTime += FRAME_NANOS);
+        mView.onDraw(canvas);
+    }
+
+    private static void layout(View view, int width, int height) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, width, height);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
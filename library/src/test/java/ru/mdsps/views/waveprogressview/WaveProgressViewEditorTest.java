@@ -0,0 +1,88 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Batched restyling: layout only when the measured size can change and no
+ * rebuilt buffers for values that did not change.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class WaveProgressViewEditorTest {
+
+    private WaveProgressView mView;
+
+    @Before
+    public void setUp() throws Exception {
+        mView = new WaveProgressView(RuntimeEnvironment.application);
+        mView.setViewType(WaveProgressView.VIEW_TYPE_RECTANGLE);
+        layout();
+    }
+
+    @Test
+    public void styleChanges_doNotRequestLayout() throws Exception {
+        mView.edit()
+                .viewType(WaveProgressView.VIEW_TYPE_OVAL)
+                .borderWidth(3)
+                .borderColor(Color.RED)
+                .allCornerRadius(8)
+                .firstWaveColor(Color.GREEN)
+                .progress(30)
+                .apply();
+
+        assertFalse(mView.isLayoutRequested());
+        assertEquals(WaveProgressView.VIEW_TYPE_OVAL, mView.getViewType());
+        assertEquals(Color.GREEN, mView.getFirstWaveColor());
+        assertEquals(30, mView.getProgress(), 0);
+    }
+
+    @Test
+    public void squareShape_requestsLayout() throws Exception {
+        mView.edit().viewType(WaveProgressView.VIEW_TYPE_CIRCLE).borderWidth(3).apply();
+
+        assertTrue(mView.isLayoutRequested());
+        layout();
+        assertEquals(mView.getMeasuredWidth(), mView.getMeasuredHeight());
+
+        mView.setViewType(WaveProgressView.VIEW_TYPE_SQUARE);
+        assertFalse(mView.isLayoutRequested());
+    }
+
+    @Test
+    public void unchangedStyle_keepsWaveBitmap() throws Exception {
+        WaveFrameMetrics metrics = new WaveFrameMetrics();
+        metrics.setTracingEnabled(false);
+        mView.setFrameMetrics(metrics);
+        Canvas canvas = new Canvas(Bitmap.createBitmap(300, 400, Bitmap.Config.ARGB_8888));
+        mView.onDraw(canvas);
+        metrics.reset();
+
+        mView.edit()
+                .viewType(mView.getViewType())
+                .firstWaveColor(mView.getFirstWaveColor())
+                .waveHeightMode(mView.getWaveHeightMode())
+                .apply();
+        mView.onDraw(canvas);
+
+        assertEquals(0, metrics.getSnapshot().getBitmapAllocationCount());
+        assertEquals(0, metrics.getSnapshot().getGeometryRebuildCount());
+    }
+
+    private void layout() {
+        mView.measure(View.MeasureSpec.makeMeasureSpec(300, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY));
+        mView.layout(0, 0, mView.getMeasuredWidth(), mView.getMeasuredHeight());
+    }
+}
@@ -0,0 +1,220 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per-frame budgets for every view type at several sizes. Fails on
+ * allocations in whole frames, {@code onDraw} included, and on wave bitmaps
+ * or outlines rebuilt while only phase and progress change. Frames are
+ * drawn into a canvas that records nothing, so the allocations and times
+ * are the view's own.
+ * <p>
+ * Timings are only reported, to {@code build/reports/wave-performance.csv}.
+ * They depend on the machine, so no baseline is kept in the tree; a
+ * {@code src/test/resources/wave-performance-baseline.csv} copied from that
+ * report on a dedicated CI machine turns on the timing check there.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23, shadows = ShadowNoOpCanvas.class)
+public class WaveProgressViewPerformanceTest {
+
+    private static final int WARM_UP_FRAMES = 100;
+    private static final int FRAMES = 600;
+    private static final long FRAME_NANOS = 16666667L;
+
+    // Fixed budgets
+    private static final long MAX_BYTES_PER_FRAME = 1;
+    private static final float BASELINE_TOLERANCE = 2f;
+
+    private static final String REPORT_FILE = "build/reports/wave-performance.csv";
+    private static final String BASELINE_RESOURCE = "/wave-performance-baseline.csv";
+    private static final String REPORT_HEADER = "case,avgDrawNanos,p99DrawNanos,bytesPerFrame";
+
+    private static final Map<String, String> sReport = new TreeMap<>();
+
+    private final int mViewType;
+    private final int mWidth;
+    private final int mHeight;
+    private final String mName;
+
+    private WaveProgressView mView;
+    private WaveFrameMetrics mMetrics;
+    private Canvas mCanvas;
+    private long mTime = FRAME_NANOS;
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{3}")
+    public static Collection<Object[]> cases() {
+        int[] types = {
+                WaveProgressView.VIEW_TYPE_RECTANGLE, WaveProgressView.VIEW_TYPE_OVAL,
+                WaveProgressView.VIEW_TYPE_SQUARE, WaveProgressView.VIEW_TYPE_CIRCLE
+        };
+        String[] typeNames = {"rectangle", "oval", "square", "circle"};
+        int[][] sizes = {{120, 120}, {300, 400}, {1080, 720}};
+        List<Object[]> cases = new ArrayList<>();
+        for (int t = 0; t < types.length; t++) {
+            for (int[] size : sizes) {
+                String name = typeNames[t] + "-" + size[0] + "x" + size[1];
+                cases.add(new Object[] {types[t], size[0], size[1], name});
+            }
+        }
+        return cases;
+    }
+
+    public WaveProgressViewPerformanceTest(int viewType, int width, int height, String name) {
+        mViewType = viewType;
+        mWidth = width;
+        mHeight = height;
+        mName = name;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mView = new WaveProgressView(RuntimeEnvironment.application);
+        mView.setViewType(mViewType);
+        mView.setBorderWidth(2);
+        mView.setAllCornerRadius(12);
+        mMetrics = new WaveFrameMetrics();
+        mMetrics.setTracingEnabled(false);
+        mView.setFrameMetrics(mMetrics);
+        mView.measure(View.MeasureSpec.makeMeasureSpec(mWidth, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(mHeight, View.MeasureSpec.EXACTLY));
+        mView.layout(0, 0, mView.getMeasuredWidth(), mView.getMeasuredHeight());
+        mCanvas = new Canvas(Bitmap.createBitmap(mView.getMeasuredWidth(),
+                mView.getMeasuredHeight(), Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void frames_stayWithinBudgets() throws Exception {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            drawFrame(i);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < FRAMES; i++) {
+            drawFrame(i);
+        }
+        long bytesPerFrame = (allocatedBytes() - before) / FRAMES;
+
+        mMetrics.reset();
+        for (int i = 0; i < FRAMES; i++) {
+            drawFrame(i);
+        }
+        WaveFrameMetrics.Snapshot snapshot = mMetrics.getSnapshot();
+
+        sReport.put(mName, String.format(Locale.US, "%s,%d,%d,%d", mName,
+                snapshot.getAverageDrawNanos(), snapshot.getP99DrawNanos(), bytesPerFrame));
+
+        assertTrue(mName + ": allocated " + bytesPerFrame + " bytes per frame",
+                bytesPerFrame < MAX_BYTES_PER_FRAME);
+        assertEquals(mName + ": wave bitmaps created after the first frame",
+                0, snapshot.getBitmapAllocationCount());
+        assertEquals(mName + ": outlines rebuilt while only phase and progress changed",
+                0, snapshot.getGeometryRebuildCount());
+        assertEquals(FRAMES, snapshot.getFrameCount());
+
+        Long baseline = readBaseline().get(mName);
+        if (baseline != null) {
+            assertTrue(mName + ": average draw " + snapshot.getAverageDrawNanos()
+                            + " ns, baseline " + baseline + " ns",
+                    snapshot.getAverageDrawNanos() <= baseline * BASELINE_TOLERANCE);
+        }
+    }
+
+    @Test
+    public void firstFrame_buildsEachLayerOnce() throws Exception {
+        drawFrame(0);
+        WaveFrameMetrics.Snapshot snapshot = mMetrics.getSnapshot();
+
+        assertEquals(mView.getWaveLayers().size(), snapshot.getGeometryRebuildCount());
+        assertTrue(snapshot.getBitmapAllocationCount() <= 1);
+    }
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        if (sReport.isEmpty()) {
+            return;
+        }
+        File file = new File(REPORT_FILE);
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write(REPORT_HEADER + "\n");
+            for (String line : sReport.values()) {
+                writer.write(line + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void drawFrame(int index) {
+        mView.advanceFrame(mTime += FRAME_NANOS);
+        if (index % 10 == 0) {
+            // Progress changes must only move the waves
+            mView.setProgress(index % 100);
+        }
+        mView.onDraw(mCanvas);
+    }
+
+    /**
+     * Average draw nanos per case from the baseline resource, if there is one.
+     */
+    private static Map<String, Long> readBaseline() throws IOException {
+        Map<String, Long> baseline = new HashMap<>();
+        InputStream in = WaveProgressViewPerformanceTest.class.getResourceAsStream(BASELINE_RESOURCE);
+        if (in == null) {
+            return baseline;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length < 2 || line.startsWith("case,")) {
+                    continue;
+                }
+                baseline.put(fields[0], Long.parseLong(fields[1].trim()));
+            }
+        } finally {
+            reader.close();
+        }
+        return baseline;
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,62 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Buffers of a scroll-aware view across detach: kept for a rebind, freed
+ * once the view stays detached.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class WaveProgressViewScrollAwareTest {
+
+    private FrameLayout mParent;
+    private WaveProgressView mView;
+
+    @Before
+    public void setUp() throws Exception {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        mParent = new FrameLayout(activity);
+        activity.setContentView(mParent);
+        mView = new WaveProgressView(activity);
+        mView.setScrollAware(true);
+        mParent.addView(mView, 300, 400);
+        mView.measure(View.MeasureSpec.makeMeasureSpec(300, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(400, View.MeasureSpec.EXACTLY));
+        mView.layout(0, 0, 300, 400);
+        mView.onDraw(new Canvas(Bitmap.createBitmap(300, 400, Bitmap.Config.ARGB_8888)));
+        assertNotNull(mView.getWaveBitmap());
+    }
+
+    @Test
+    public void rebind_keepsBuffers() throws Exception {
+        Bitmap bitmap = mView.getWaveBitmap();
+        mParent.removeView(mView);
+        mParent.addView(mView, 300, 400);
+
+        Robolectric.getForegroundThreadScheduler().advanceBy(WaveProgressView.DETACHED_RELEASE_DELAY);
+        assertSame(bitmap, mView.getWaveBitmap());
+    }
+
+    @Test
+    public void detachedForGood_releasesBuffers() throws Exception {
+        mParent.removeView(mView);
+        assertNotNull(mView.getWaveBitmap());
+
+        Robolectric.getForegroundThreadScheduler().advanceBy(WaveProgressView.DETACHED_RELEASE_DELAY);
+        assertNull(mView.getWaveBitmap());
+    }
+}
@@ -0,0 +1,67 @@
+package ru.mdsps.views.waveprogressview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+/**
+ * Direct rendering: the bitmap fallback below Android P and the direct path
+ * itself, which skips the offscreen wave bitmap.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class WaveRenderModeTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 400;
+
+    private WaveRenderer mRenderer;
+    private WaveFrameMetrics mMetrics;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() throws Exception {
+        mRenderer = new WaveRenderer();
+        mRenderer.setBounds(WIDTH, HEIGHT, 0, 0, 0, 0);
+        mRenderer.setRenderMode(WaveProgressView.RENDER_MODE_DIRECT);
+        mMetrics = new WaveFrameMetrics();
+        mMetrics.setTracingEnabled(false);
+        mRenderer.setFrameMetrics(mMetrics);
+        mCanvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void direct_fallsBackToBitmapBeforeP() throws Exception {
+        mRenderer.draw(mCanvas);
+
+        assertNotNull(mRenderer.getWaveBitmap());
+        assertEquals(1, mMetrics.getSnapshot().getBitmapAllocationCount());
+    }
+
+    @Test
+    public void direct_skipsWaveBitmap() throws Exception {
+        mRenderer.setDirectRenderingSupported(true);
+        mRenderer.draw(mCanvas);
+        mRenderer.draw(mCanvas);
+
+        assertNull(mRenderer.getWaveBitmap());
+        assertEquals(0, mMetrics.getSnapshot().getBitmapAllocationCount());
+    }
+
+    @Test
+    public void switchingToDirect_releasesWaveBitmap() throws Exception {
+        mRenderer.draw(mCanvas);
+        assertNotNull(mRenderer.getWaveBitmap());
+
+        mRenderer.setDirectRenderingSupported(true);
+        mRenderer.draw(mCanvas);
+        assertNull(mRenderer.getWaveBitmap());
+    }
+}